@@ -9,7 +9,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.StatClient;
 import ru.practicum.StatDto;
-import ru.practicum.StatResponseDto;
 import ru.practicum.category.dto.CategoryDto;
 import ru.practicum.category.mapper.CategoryMapper;
 import ru.practicum.category.model.Category;
@@ -422,7 +421,7 @@ public class EventServiceImpl implements EventService {
                     ip,
                     LocalDateTime.now()
             );
-            // Синхронный вызов
+            // При stats-service.hits.async=true хит только ставится в очередь клиента
             statsClient.addStatEvent(hit);
         } catch (Exception e) {
             log.warn("Не удалось сохранить хит для path={}, ip={}: {}", path, ip, e.getMessage());
@@ -455,21 +454,18 @@ public class EventServiceImpl implements EventService {
                 .toList();
 
         LocalDateTime start = eventRepository.findFirstByOrderByCreatedOnAsc().getCreatedOn();
-        LocalDateTime end = LocalDateTime.now();
 
-        List<StatResponseDto> stats = statsClient.getStats(start, end, uris, true);
+        Map<String, Long> uriViews = statsClient.getViews(start, uris, true);
 
         Map<Long, Long> views = eventIds.stream()
                 .collect(Collectors.toMap(id -> id, id -> 0L));
 
-        if (stats != null && !stats.isEmpty()) {
-            stats.forEach(stat -> {
-                Long eventId = getEventIdFromUri(stat.getUri());
-                if (eventId > -1L) {
-                    views.put(eventId, stat.getHits());
-                }
-            });
-        }
+        uriViews.forEach((uri, hits) -> {
+            Long eventId = getEventIdFromUri(uri);
+            if (eventId > -1L) {
+                views.put(eventId, hits);
+            }
+        });
         return views;
     }
 
@@ -0,0 +1,104 @@
+package ru.practicum.bench;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.Data;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.StatDto;
+import ru.practicum.StatTimestampCodec;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+// Кодек меток времени против прежнего пути: StatsRequestDto.of создавал два DateTimeFormatter на вызов
+// и переходил на ISO-формат через DateTimeParseException, StatClient печатал через форматтер по шаблону.
+// Запуск: java -jar stats-bench/target/benchmarks.jar StatTimestampBenchmark -prof gc
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatTimestampBenchmark {
+
+    private static final DateTimeFormatter PATTERN_FORMATTER = DateTimeFormatter.ofPattern(StatTimestampCodec.PATTERN);
+
+    @Param({"2024-03-15 12:30:45", "2024-03-15T12:30:45"})
+    private String text;
+
+    private LocalDateTime value;
+    private String statJson;
+    private ObjectMapper legacyMapper;
+    private ObjectMapper mapper;
+
+    @Setup
+    public void setUp() {
+        value = LocalDateTime.of(2024, 3, 15, 12, 30, 45);
+        // Прежний @JsonFormat принимал только основной формат, поэтому в JSON он при любом text
+        statJson = "{\"app\":\"ewm-main-service\",\"uri\":\"/events/1\",\"ip\":\"192.163.0.1\","
+                + "\"timestamp\":\"2024-03-15 12:30:45\"}";
+        // Прежняя аннотация @JsonFormat работала через форматтер модуля jsr310
+        legacyMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        mapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public LocalDateTime parseLegacy() {
+        DateTimeFormatter formatter1 = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        DateTimeFormatter formatter2 = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+        try {
+            return LocalDateTime.parse(text, formatter1);
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(text, formatter2);
+        }
+    }
+
+    @Benchmark
+    public LocalDateTime parseCodec() {
+        return StatTimestampCodec.parse(text);
+    }
+
+    @Benchmark
+    public String formatLegacy() {
+        return value.format(PATTERN_FORMATTER);
+    }
+
+    @Benchmark
+    public String formatCodec() {
+        return StatTimestampCodec.format(value);
+    }
+
+    @Benchmark
+    public LegacyStatDto readStatDtoLegacy() throws IOException {
+        return legacyMapper.readValue(statJson, LegacyStatDto.class);
+    }
+
+    @Benchmark
+    public StatDto readStatDtoCodec() throws IOException {
+        return mapper.readValue(statJson, StatDto.class);
+    }
+
+    // StatDto до перехода на кодек
+    @Data
+    public static class LegacyStatDto {
+        private String app;
+        private String uri;
+        private String ip;
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", shape = JsonFormat.Shape.STRING)
+        private LocalDateTime timestamp;
+    }
+}
@@ -0,0 +1,95 @@
+package ru.practicum.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.StatDto;
+import ru.practicum.StatResponseDto;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// JSON против Smile на телах StatClient <-> stats-service: пакет хитов POST /hits и ответ GET /stats.
+// Размеры тел печатаются при подготовке каждого набора параметров.
+// Запуск: java -jar stats-bench/target/benchmarks.jar StatWireFormatBenchmark -prof gc
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatWireFormatBenchmark {
+
+    private static final TypeReference<List<StatDto>> HITS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<StatResponseDto>> STATS = new TypeReference<>() {
+    };
+
+    @Param({"json", "smile"})
+    private String format;
+
+    // Размер пакета хитов и число строк ответа
+    @Param({"500"})
+    private int size;
+
+    private ObjectMapper mapper;
+    private List<StatDto> hits;
+    private List<StatResponseDto> stats;
+    private byte[] hitsBody;
+    private byte[] statsBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = "smile".equals(format) ? new ObjectMapper(new SmileFactory()) : new ObjectMapper();
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 3, 15, 12, 0);
+        hits = new ArrayList<>(size);
+        stats = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hits.add(new StatDto("ewm-main-service", "/events/" + random.nextInt(50_000),
+                    "10." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256),
+                    start.plusSeconds(random.nextInt(3600))));
+            stats.add(new StatResponseDto("ewm-main-service", "/events/" + i, random.nextInt(100_000)));
+        }
+        hitsBody = mapper.writeValueAsBytes(hits);
+        statsBody = mapper.writeValueAsBytes(stats);
+        System.out.printf("%n%s body bytes: %d hits %d (%.1f per hit), %d stats rows %d (%.1f per row)%n",
+                format, size, hitsBody.length, (double) hitsBody.length / size,
+                size, statsBody.length, (double) statsBody.length / size);
+    }
+
+    @Benchmark
+    public byte[] writeHits() throws IOException {
+        return mapper.writeValueAsBytes(hits);
+    }
+
+    @Benchmark
+    public List<StatDto> readHits() throws IOException {
+        return mapper.readValue(hitsBody, HITS);
+    }
+
+    @Benchmark
+    public byte[] writeStats() throws IOException {
+        return mapper.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public List<StatResponseDto> readStats() throws IOException {
+        return mapper.readValue(statsBody, STATS);
+    }
+}
@@ -1,76 +1,354 @@
 package ru.practicum;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.util.UriBuilder;
+import ru.practicum.client.AsyncHitSender;
+import ru.practicum.client.CircuitBreaker;
+import ru.practicum.client.StatClientProperties;
+import ru.practicum.client.ViewCountCache;
 import ru.practicum.exception.StatsClientException;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 
 @Slf4j
 @Component
 public class StatClient {
     private final RestClient restClient;
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final AsyncHitSender hitSender;
+    private final int queryUrisThreshold;
+    private final int prefixUrisThreshold;
+    private final ViewCountCache viewCache;
+    private final CloseableHttpClient httpClient;
+    private final CircuitBreaker circuitBreaker;
+    // Последние полученные значения по (uri, unique): ими отвечаем, пока stats-service недоступен
+    private final ConcurrentMap<LastKnownKey, StatResponseDto> lastKnown = new ConcurrentHashMap<>();
+    private final int fallbackMaxSize;
+    private final Counter fallbackCalls;
+    // Сбрасывается, если stats-service не принимает Smile
+    private volatile boolean binary;
 
-    public StatClient(@Value("${stats-service.url:http://localhost:9090}") String serverUrl) {
+    public StatClient(StatClientProperties properties, MeterRegistry meterRegistry) {
+        this.httpClient = createHttpClient(properties, meterRegistry);
         this.restClient = RestClient.builder()
-                .baseUrl(serverUrl)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .baseUrl(properties.getUrl())
+                .requestFactory(new HttpComponentsClientHttpRequestFactory(httpClient))
                 .build();
+        this.binary = properties.isBinary();
+        this.hitSender = properties.getHits().isAsync()
+                ? new AsyncHitSender(properties.getHits(), this::sendHits, meterRegistry)
+                : null;
+        this.queryUrisThreshold = properties.getQueryUrisThreshold();
+        this.prefixUrisThreshold = properties.getPrefixUrisThreshold();
+        this.viewCache = properties.getViewCache().isEnabled()
+                ? new ViewCountCache(properties.getViewCache(), this::loadViews, meterRegistry)
+                : null;
+        this.circuitBreaker = properties.getCircuitBreaker().isEnabled()
+                ? new CircuitBreaker("stats-service", properties.getCircuitBreaker(), meterRegistry)
+                : null;
+        this.fallbackMaxSize = properties.getCircuitBreaker().getFallbackMaxSize();
+        this.fallbackCalls = meterRegistry.counter("stats.client.stats.fallback");
     }
 
     public void addStatEvent(StatDto statDto) {
+        if (hitSender != null) {
+            hitSender.enqueue(statDto);
+            return;
+        }
+        sendHit(statDto);
+    }
+
+    // При включённом circuit breaker недоступность stats-service не роняет вызывающего:
+    // возвращаются последние известные значения, для неизвестных URI записей нет (то есть ноль просмотров)
+    public List<StatResponseDto> getStats(LocalDateTime start, LocalDateTime end,
+                                          List<String> uris, boolean unique) {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            return fallbackStats(uris, unique);
+        }
+
         try {
-            restClient.post()
-                    .uri("/hit")
-                    .body(statDto)
-                    .retrieve()
-                    .toBodilessEntity();
+            List<StatResponseDto> result = uris != null && uris.size() >= queryUrisThreshold
+                    ? queryStats(start, end, uris, unique)
+                    : fetchStats(start, end, uris, unique);
 
-            log.debug("Запись обращения к эндпоинту успешно сохранена: приложение {}, URI {}",
-                    statDto.getApp(), statDto.getUri());
+            log.debug("Получено записей статистики: {}", result != null ? result.size() : 0);
+
+            if (circuitBreaker != null) {
+                circuitBreaker.onSuccess();
+                remember(result, unique);
+            }
+            return result;
+        } catch (HttpClientErrorException exception) {
+            // 4xx - ошибка самого запроса: stats-service ответил, значит он доступен
+            if (circuitBreaker != null) {
+                circuitBreaker.onSuccess();
+            }
+            log.error("Ошибка при получении статистики: {}", exception.getMessage());
+            throw new StatsClientException("Statistics could not be retrieved", exception);
         } catch (Exception exception) {
-            log.error("Ошибка при сохранении статистики: {}", exception.getMessage());
-            throw new StatsClientException("Endpoint statistics could not be saved", exception);
+            if (circuitBreaker == null) {
+                log.error("Ошибка при получении статистики: {}", exception.getMessage());
+                throw new StatsClientException("Statistics could not be retrieved", exception);
+            }
+            circuitBreaker.onFailure();
+            log.warn("Ошибка при получении статистики, отдаём последние известные значения: {}",
+                    exception.getMessage());
+            return fallbackStats(uris, unique);
         }
     }
 
-    public List<StatResponseDto> getStats(LocalDateTime start, LocalDateTime end,
-                                          List<String> uris, boolean unique) {
+    // Просмотры URI с start по текущий момент. При включённом кэше значение может отставать на ttl + maxStale
+    public Map<String, Long> getViews(LocalDateTime start, List<String> uris, boolean unique) {
+        if (viewCache != null) {
+            return viewCache.get(start, uris, unique);
+        }
+        return loadViews(start, uris, unique);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (hitSender != null) {
+            hitSender.close();
+        }
+        if (viewCache != null) {
+            viewCache.close();
+        }
+        httpClient.close(CloseMode.GRACEFUL);
+    }
+
+    // Пул keep-alive соединений: без него каждый вызов открывает новое TCP-соединение,
+    // и под нагрузкой между сервисами копятся TIME_WAIT и кончаются эфемерные порты
+    private static CloseableHttpClient createHttpClient(StatClientProperties properties, MeterRegistry meterRegistry) {
+        StatClientProperties.Pool pool = properties.getPool();
+        Timeout connectTimeout = Timeout.of(properties.getConnectTimeout());
+        Timeout readTimeout = Timeout.of(properties.getReadTimeout());
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(pool.getMaxTotal())
+                .setMaxConnPerRoute(pool.getMaxPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(connectTimeout)
+                        .setSocketTimeout(readTimeout)
+                        .setTimeToLive(TimeValue.of(pool.getTimeToLive()))
+                        .setValidateAfterInactivity(TimeValue.of(pool.getValidateAfterInactivity()))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "stats-service").bindTo(meterRegistry);
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(connectTimeout)
+                        .setResponseTimeout(readTimeout)
+                        // Если сервер не прислал Keep-Alive: timeout, соединение держится столько
+                        .setConnectionKeepAlive(TimeValue.of(pool.getKeepAlive()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(pool.getIdleEvictAfter()))
+                .build();
+    }
+
+    private void remember(List<StatResponseDto> stats, boolean unique) {
+        if (stats == null) {
+            return;
+        }
+        for (StatResponseDto stat : stats) {
+            LastKnownKey key = new LastKnownKey(stat.getUri(), unique);
+            if (lastKnown.size() < fallbackMaxSize || lastKnown.containsKey(key)) {
+                lastKnown.put(key, stat);
+            }
+        }
+    }
+
+    private List<StatResponseDto> fallbackStats(List<String> uris, boolean unique) {
+        fallbackCalls.increment();
+        if (uris == null) {
+            return List.of();
+        }
+        return uris.stream()
+                .distinct()
+                .flatMap(uri -> StatUriPattern.isPattern(uri)
+                        ? lastKnown.entrySet().stream()
+                                .filter(entry -> entry.getKey().unique() == unique
+                                        && entry.getKey().uri().startsWith(StatUriPattern.prefix(uri)))
+                                .map(Map.Entry::getValue)
+                        : Stream.ofNullable(lastKnown.get(new LastKnownKey(uri, unique))))
+                .sorted(Comparator.comparingLong(StatResponseDto::getHits).reversed())
+                .toList();
+    }
+
+    private Map<String, Long> loadViews(LocalDateTime start, List<String> uris, boolean unique) {
+        String prefix = prefixUrisThreshold > 0 && uris.size() >= prefixUrisThreshold ? commonPrefix(uris) : null;
+        Map<String, Long> views = new HashMap<>();
+        List<StatResponseDto> stats = getStats(start, LocalDateTime.now(),
+                prefix == null ? uris : List.of(StatUriPattern.ofPrefix(prefix)), unique);
+        if (stats == null) {
+            return views;
+        }
+        // Под шаблон попадают и незапрошенные URI: в ответ идут только запрошенные
+        Set<String> requested = prefix == null ? null : new HashSet<>(uris);
+        stats.forEach(stat -> {
+            if (requested == null || requested.contains(stat.getUri())) {
+                views.put(stat.getUri(), stat.getHits());
+            }
+        });
+        return views;
+    }
+
+    // Общий префикс до последнего '/' включительно; null, если он пуст или это корень "/"
+    private static String commonPrefix(List<String> uris) {
+        String prefix = uris.get(0);
+        for (String uri : uris) {
+            int length = 0;
+            int max = Math.min(prefix.length(), uri.length());
+            while (length < max && prefix.charAt(length) == uri.charAt(length)) {
+                length++;
+            }
+            prefix = prefix.substring(0, length);
+        }
+        prefix = prefix.substring(0, prefix.lastIndexOf('/') + 1);
+        return prefix.length() > 1 && prefix.indexOf(StatUriPattern.WILDCARD) < 0 ? prefix : null;
+    }
+
+    private List<StatResponseDto> fetchStats(LocalDateTime start, LocalDateTime end,
+                                             List<String> uris, boolean unique) {
+        return withFormatFallback(() -> restClient.get()
+                .uri(uriBuilder -> {
+                    UriBuilder builder = uriBuilder.path("/stats")
+                            .queryParam("start", StatTimestampCodec.format(start))
+                            .queryParam("end", StatTimestampCodec.format(end));
+
+                    if (uris != null && !uris.isEmpty()) {
+                        uris.forEach(uri -> builder.queryParam("uris", uri));
+                    }
+
+                    builder.queryParam("unique", unique);
+
+                    return builder.build();
+                })
+                .accept(acceptTypes())
+                .retrieve()
+                .body(new ParameterizedTypeReference<List<StatResponseDto>>() {
+                }));
+    }
+
+    private List<StatResponseDto> queryStats(LocalDateTime start, LocalDateTime end,
+                                             List<String> uris, boolean unique) {
+        StatsRequestDto request = StatsRequestDto.builder()
+                .start(start)
+                .end(end)
+                .uris(uris)
+                .unique(unique)
+                .build();
+        return withFormatFallback(() -> restClient.post()
+                .uri("/stats/query")
+                .contentType(contentType())
+                .accept(acceptTypes())
+                .body(request)
+                .retrieve()
+                .body(new ParameterizedTypeReference<List<StatResponseDto>>() {
+                }));
+    }
+
+    private void sendHits(List<StatDto> hits) {
+        StatCountDto saved = withFormatFallback(() -> restClient.post()
+                .uri("/hits")
+                .contentType(contentType())
+                .accept(acceptTypes())
+                .body(hits)
+                .retrieve()
+                .body(StatCountDto.class));
+
+        log.debug("Пакет хитов сохранён: отправлено {}, сохранено {}",
+                hits.size(), saved != null ? saved.getCount() : 0);
+    }
+
+    private MediaType contentType() {
+        return binary ? StatMediaTypes.SMILE : MediaType.APPLICATION_JSON;
+    }
+
+    // JSON остаётся допустимым ответом: сервис без поддержки Smile ответит им, а не 406
+    private MediaType[] acceptTypes() {
+        return binary
+                ? new MediaType[]{StatMediaTypes.SMILE, MediaType.APPLICATION_JSON}
+                : new MediaType[]{MediaType.APPLICATION_JSON};
+    }
+
+    private <T> T withFormatFallback(Supplier<T> call) {
         try {
-            List<StatResponseDto> result = restClient.get()
-                    .uri(uriBuilder -> {
-                        UriBuilder builder = uriBuilder.path("/stats")
-                                .queryParam("start", start.format(formatter))
-                                .queryParam("end", end.format(formatter));
+            return call.get();
+        } catch (HttpClientErrorException.UnsupportedMediaType exception) {
+            if (!binary) {
+                throw exception;
+            }
+            binary = false;
+            log.warn("stats-service не принимает Smile, клиент переходит на JSON");
+            return call.get();
+        }
+    }
 
-                        if (uris != null && !uris.isEmpty()) {
-                            uris.forEach(uri -> builder.queryParam("uris", uri));
-                        }
+    private record LastKnownKey(String uri, boolean unique) {
+    }
 
-                        builder.queryParam("unique", unique);
+    // Синхронная отправка идёт в потоке запроса, поэтому при открытой цепи хит отбрасывается сразу, без таймаута
+    private void sendHit(StatDto statDto) {
+        if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+            throw new StatsClientException("Endpoint statistics could not be saved: stats-service circuit is open");
+        }
 
-                        return builder.build();
-                    })
+        try {
+            withFormatFallback(() -> restClient.post()
+                    .uri("/hit")
+                    .contentType(contentType())
+                    .accept(acceptTypes())
+                    .body(statDto)
                     .retrieve()
-                    .body(new ParameterizedTypeReference<>() {
-                    });
+                    .toBodilessEntity());
 
-            log.debug("Получено записей статистики: {}", result != null ? result.size() : 0);
-
-            return result;
+            log.debug("Запись обращения к эндпоинту успешно сохранена: приложение {}, URI {}",
+                    statDto.getApp(), statDto.getUri());
+            if (circuitBreaker != null) {
+                circuitBreaker.onSuccess();
+            }
         } catch (Exception exception) {
-            log.error("Ошибка при получении статистики: {}", exception.getMessage());
-            throw new StatsClientException("Statistics could not be retrieved", exception);
+            if (circuitBreaker != null) {
+                if (exception instanceof HttpClientErrorException) {
+                    circuitBreaker.onSuccess();
+                } else {
+                    circuitBreaker.onFailure();
+                }
+            }
+            log.error("Ошибка при сохранении статистики: {}", exception.getMessage());
+            throw new StatsClientException("Endpoint statistics could not be saved", exception);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.StatDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@Slf4j
+public class AsyncHitSender implements AutoCloseable {
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 5_000;
+
+    private final BlockingQueue<StatDto> queue;
+    private final Consumer<List<StatDto>> sender;
+    private final StatClientProperties.Hits settings;
+    private final Thread flusher;
+
+    private final Counter overflowDrops;
+    private final Counter sendErrorDrops;
+    private final Counter sentHits;
+    private final Timer flushTimer;
+
+    private volatile boolean running = true;
+
+    public AsyncHitSender(StatClientProperties.Hits settings, Consumer<List<StatDto>> sender, MeterRegistry registry) {
+        this.settings = settings;
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<>(settings.getCapacity());
+
+        registry.gauge("stats.client.hits.queue.size", queue, BlockingQueue::size);
+        this.overflowDrops = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "overflow")
+                .register(registry);
+        this.sendErrorDrops = Counter.builder("stats.client.hits.dropped")
+                .tag("reason", "send_error")
+                .register(registry);
+        this.sentHits = registry.counter("stats.client.hits.sent");
+        this.flushTimer = Timer.builder("stats.client.hits.flush")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+
+        this.flusher = new Thread(this::flushLoop, "stats-hit-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public void enqueue(StatDto hit) {
+        if (queue.offer(hit)) {
+            return;
+        }
+
+        boolean accepted = switch (settings.getOverflowPolicy()) {
+            case DROP -> false;
+            case BLOCK -> offerBlocking(hit);
+            case SAMPLE -> offerSampled(hit);
+        };
+
+        if (!accepted) {
+            overflowDrops.increment();
+            log.debug("Очередь хитов переполнена, хит отброшен: URI {}", hit.getUri());
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Отправка хитов остановлена, в очереди осталось: {}", queue.size());
+    }
+
+    private boolean offerBlocking(StatDto hit) {
+        try {
+            return queue.offer(hit, settings.getBlockTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean offerSampled(StatDto hit) {
+        if (ThreadLocalRandom.current().nextDouble() >= settings.getSampleRate()) {
+            return false;
+        }
+        // Вытесняем самый старый хит: очередь остаётся ограниченной, а свежие данные не теряются целиком
+        if (queue.poll() != null) {
+            overflowDrops.increment();
+        }
+        return queue.offer(hit);
+    }
+
+    private void flushLoop() {
+        int batchSize = settings.getBatchSize();
+        long intervalNanos = settings.getFlushInterval().toNanos();
+
+        while (running) {
+            List<StatDto> batch = new ArrayList<>(batchSize);
+            try {
+                collect(batch, batchSize, intervalNanos);
+            } catch (InterruptedException e) {
+                // close(): отправляем то, что успели собрать, и выходим
+            }
+            flush(batch);
+        }
+
+        Thread.interrupted();
+        List<StatDto> rest = new ArrayList<>(queue.size());
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            flush(rest.subList(from, Math.min(from + batchSize, rest.size())));
+        }
+    }
+
+    private void collect(List<StatDto> batch, int batchSize, long intervalNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + intervalNanos;
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            StatDto hit = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (hit == null) {
+                return;
+            }
+            batch.add(hit);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private void flush(List<StatDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            sender.accept(batch);
+            sentHits.increment(batch.size());
+            log.debug("Отправлен пакет хитов: {}", batch.size());
+        } catch (Exception exception) {
+            sendErrorDrops.increment(batch.size());
+            log.warn("Не удалось отправить пакет из {} хитов: {}", batch.size(), exception.getMessage());
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
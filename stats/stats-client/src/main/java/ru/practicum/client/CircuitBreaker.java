@@ -0,0 +1,107 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// CLOSED -> (failureThreshold ошибок подряд) -> OPEN -> (openDuration) -> HALF_OPEN -> один пробный вызов:
+// успех закрывает цепь, ошибка снова открывает её на openDuration. Пока цепь не CLOSED, вызовы не пропускаются
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAtNanos;
+
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+    private final Counter rejected;
+
+    public CircuitBreaker(String name, StatClientProperties.CircuitBreaker settings, MeterRegistry registry) {
+        this.name = name;
+        this.failureThreshold = settings.getFailureThreshold();
+        this.openDurationNanos = settings.getOpenDuration().toNanos();
+
+        Gauge.builder("stats.client.circuit.state", state, ref -> ref.get().ordinal())
+                .tag("name", name)
+                .register(registry);
+        for (State to : State.values()) {
+            transitions.put(to, Counter.builder("stats.client.circuit.transitions")
+                    .tag("name", name)
+                    .tag("to", to.name().toLowerCase())
+                    .register(registry));
+        }
+        this.rejected = Counter.builder("stats.client.circuit.rejected")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    // true - вызов можно выполнять; после него обязателен onSuccess или onFailure
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.nanoTime() - openedAtNanos >= openDurationNanos
+                && transition(State.OPEN, State.HALF_OPEN)) {
+            // Пробный вызов достаётся только потоку, выигравшему переход
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        transition(State.HALF_OPEN, State.CLOSED);
+    }
+
+    public void onFailure() {
+        if (state.get() == State.HALF_OPEN) {
+            open(State.HALF_OPEN);
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            open(State.CLOSED);
+        }
+    }
+
+    private void open(State from) {
+        if (state.get() != from) {
+            return;
+        }
+        // Время выставляется до перехода: поток, увидевший OPEN, не должен прочитать старое openedAtNanos
+        openedAtNanos = System.nanoTime();
+        if (transition(from, State.OPEN)) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    private boolean transition(State from, State to) {
+        if (!state.compareAndSet(from, to)) {
+            return false;
+        }
+        transitions.get(to).increment();
+        log.warn("Цепь {} переключена: {} -> {}", name, from, to);
+        return true;
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.client;
+
+public enum OverflowPolicy {
+    DROP,
+    BLOCK,
+    SAMPLE
+}
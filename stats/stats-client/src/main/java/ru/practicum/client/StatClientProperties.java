@@ -0,0 +1,116 @@
+package ru.practicum.client;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "stats-service")
+public class StatClientProperties {
+
+    private String url = "http://localhost:9090";
+
+    private Duration connectTimeout = Duration.ofSeconds(1);
+
+    // Ожидание ответа stats-service; дольше ждать нет смысла - запрос пользователя висит всё это время
+    private Duration readTimeout = Duration.ofSeconds(2);
+
+    // Начиная с этого числа URI статистика запрашивается через POST /stats/query, а не параметрами в URL
+    private int queryUrisThreshold = 50;
+
+    // Начиная с этого числа URI с общим префиксом ("/events/1", "/events/2", ...) просмотры запрашиваются
+    // одним шаблоном "/events/*", а лишние URI отбрасываются на клиенте. Сервис тогда читает все URI под
+    // префиксом, и стоимость запроса растёт с их общим числом, поэтому по умолчанию выключено (0).
+    // Сервис должен понимать шаблоны в uris, иначе просмотры будут нулевыми
+    private int prefixUrisThreshold = 0;
+
+    // Обмен в бинарном формате Smile вместо JSON; если сервис его не принимает (415), клиент переходит на JSON
+    private boolean binary = true;
+
+    private Pool pool = new Pool();
+
+    private Hits hits = new Hits();
+
+    private ViewCache viewCache = new ViewCache();
+
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    @Data
+    public static class Pool {
+
+        private int maxTotal = 100;
+
+        // Маршрут один (stats-service), поэтому лимит на маршрут фактически ограничивает весь пул
+        private int maxPerRoute = 50;
+
+        // Должно быть меньше keep-alive таймаута сервера, иначе клиент отправит запрос в уже закрытое соединение
+        private Duration keepAlive = Duration.ofSeconds(30);
+
+        // Соединения, простоявшие дольше, закрываются фоновым потоком
+        private Duration idleEvictAfter = Duration.ofSeconds(30);
+
+        // Максимальный срок жизни соединения: после смены адреса сервиса пул постепенно переподключится
+        private Duration timeToLive = Duration.ofMinutes(5);
+
+        // Простоявшее дольше соединение проверяется перед выдачей из пула
+        private Duration validateAfterInactivity = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Hits {
+
+        // false - каждый хит отправляется синхронно в потоке запроса
+        private boolean async = false;
+
+        private int capacity = 10_000;
+
+        private int batchSize = 500;
+
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+        // Для BLOCK: сколько поток запроса ждёт места в очереди, прежде чем хит будет отброшен
+        private Duration blockTimeout = Duration.ofMillis(50);
+
+        // Для SAMPLE: доля хитов, которые при переполнении вытесняют самый старый хит из очереди
+        private double sampleRate = 0.1;
+    }
+
+    @Data
+    public static class ViewCache {
+
+        // false - каждый запрос просмотров идёт в stats-service
+        private boolean enabled = false;
+
+        // Сколько значение считается свежим
+        private Duration ttl = Duration.ofSeconds(5);
+
+        // Сколько после ttl устаревшее значение ещё отдаётся, пока идёт фоновое обновление; дальше - синхронная загрузка
+        private Duration maxStale = Duration.ofMinutes(1);
+
+        private int maxSize = 10_000;
+
+        private int refreshThreads = 2;
+
+        private int refreshQueueCapacity = 100;
+    }
+
+    @Data
+    public static class CircuitBreaker {
+
+        private boolean enabled = true;
+
+        // Сколько ошибок подряд (таймаут, обрыв соединения, 5xx) открывает цепь
+        private int failureThreshold = 5;
+
+        // Сколько цепь остаётся открытой до пробного запроса
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        // Сколько URI помнит резервный ответ с последними известными значениями
+        private int fallbackMaxSize = 10_000;
+    }
+}
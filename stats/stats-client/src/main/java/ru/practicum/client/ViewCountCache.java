@@ -0,0 +1,187 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Кэш просмотров по схеме stale-while-revalidate: устаревшее значение отдаётся сразу,
+// а одно фоновое обновление на ключ подтягивает свежее. Синхронно в stats-service ходят только промахи
+@Slf4j
+public class ViewCountCache implements AutoCloseable {
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Loader loader;
+    private final long ttlNanos;
+    private final long maxStaleNanos;
+    private final int maxSize;
+    private final ExecutorService refresher;
+
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Counter refreshErrors;
+    private final Counter evicted;
+
+    public ViewCountCache(StatClientProperties.ViewCache settings, Loader loader, MeterRegistry registry) {
+        this.loader = loader;
+        this.ttlNanos = settings.getTtl().toNanos();
+        this.maxStaleNanos = settings.getMaxStale().toNanos();
+        this.maxSize = settings.getMaxSize();
+        // Очередь ограничена: при лавине устаревших ключей лишние обновления пропускаются, ключи остаются stale
+        this.refresher = new ThreadPoolExecutor(settings.getRefreshThreads(), settings.getRefreshThreads(),
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(settings.getRefreshQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stats-view-refresher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        registry.gauge("stats.client.views.cache.size", entries, Map::size);
+        this.hits = Counter.builder("stats.client.views.cache.requests")
+                .tag("result", "hit")
+                .register(registry);
+        this.staleHits = Counter.builder("stats.client.views.cache.requests")
+                .tag("result", "stale")
+                .register(registry);
+        this.misses = Counter.builder("stats.client.views.cache.requests")
+                .tag("result", "miss")
+                .register(registry);
+        this.refreshErrors = registry.counter("stats.client.views.cache.refresh.errors");
+        this.evicted = registry.counter("stats.client.views.cache.evicted");
+    }
+
+    public Map<String, Long> get(LocalDateTime start, List<String> uris, boolean unique) {
+        long now = System.nanoTime();
+        Map<String, Long> views = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        List<Key> stale = new ArrayList<>();
+
+        for (String uri : uris) {
+            if (views.containsKey(uri)) {
+                continue;
+            }
+            Key key = new Key(uri, unique, start);
+            Entry entry = entries.get(key);
+            long age = entry == null ? Long.MAX_VALUE : now - entry.loadedAtNanos;
+            if (age <= ttlNanos) {
+                hits.increment();
+            } else if (age <= ttlNanos + maxStaleNanos) {
+                staleHits.increment();
+                if (entry.refreshing.compareAndSet(false, true)) {
+                    stale.add(key);
+                }
+            } else {
+                misses.increment();
+                missing.add(uri);
+                views.put(uri, 0L);
+                continue;
+            }
+            entry.lastAccessNanos = now;
+            views.put(uri, entry.views);
+        }
+
+        if (!stale.isEmpty()) {
+            scheduleRefresh(start, unique, stale);
+        }
+        if (!missing.isEmpty()) {
+            views.putAll(load(start, missing, unique));
+        }
+        return views;
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    private Map<String, Long> load(LocalDateTime start, List<String> uris, boolean unique) {
+        Map<String, Long> loaded = loader.load(start, uris, unique);
+        long now = System.nanoTime();
+        Map<String, Long> views = new HashMap<>();
+        for (String uri : uris) {
+            long count = loaded.getOrDefault(uri, 0L);
+            entries.put(new Key(uri, unique, start), new Entry(count, now));
+            views.put(uri, count);
+        }
+        evictExcess();
+        return views;
+    }
+
+    private void scheduleRefresh(LocalDateTime start, boolean unique, List<Key> keys) {
+        try {
+            refresher.execute(() -> refresh(start, unique, keys));
+        } catch (RejectedExecutionException e) {
+            keys.forEach(this::releaseRefresh);
+            log.debug("Очередь обновления кэша просмотров переполнена, пропущено ключей: {}", keys.size());
+        }
+    }
+
+    private void refresh(LocalDateTime start, boolean unique, List<Key> keys) {
+        try {
+            load(start, keys.stream().map(Key::uri).toList(), unique);
+        } catch (Exception exception) {
+            // Устаревшие значения продолжают отдаваться, следующее обращение попробует снова
+            refreshErrors.increment();
+            keys.forEach(this::releaseRefresh);
+            log.warn("Не удалось обновить кэш просмотров для {} URI: {}", keys.size(), exception.getMessage());
+        }
+    }
+
+    private void releaseRefresh(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    // Сверх лимита вытесняются самые давно запрошенные ключи, с запасом в 10%, чтобы не сортировать на каждой вставке
+    private void evictExcess() {
+        int excess = entries.size() - maxSize;
+        if (excess <= 0) {
+            return;
+        }
+        List<Key> victims = entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccessNanos))
+                .limit(excess + maxSize / 10)
+                .map(Map.Entry::getKey)
+                .toList();
+        victims.forEach(entries::remove);
+        evicted.increment(victims.size());
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        Map<String, Long> load(LocalDateTime start, List<String> uris, boolean unique);
+    }
+
+    private record Key(String uri, boolean unique, LocalDateTime start) {
+    }
+
+    private static final class Entry {
+        private final long views;
+        private final long loadedAtNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long lastAccessNanos;
+
+        private Entry(long views, long loadedAtNanos) {
+            this.views = views;
+            this.loadedAtNanos = loadedAtNanos;
+            this.lastAccessNanos = loadedAtNanos;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package ru.practicum.exception;
 
 public class StatsClientException extends RuntimeException {
+    public StatsClientException(String message) {
+        super(message);
+    }
+
     public StatsClientException(String message, Throwable cause) {
         super(message, cause);
     }
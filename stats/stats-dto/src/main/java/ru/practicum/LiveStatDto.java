@@ -0,0 +1,21 @@
+package ru.practicum;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class LiveStatDto {
+
+    private String uri;
+
+    private long hitsLast5Minutes;
+
+    private long hitsLastHour;
+
+    private long hitsLast24Hours;
+}
@@ -1,6 +1,7 @@
 package ru.practicum;
 
-import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
@@ -26,10 +27,11 @@ public class StatDto {
     private String uri;
 
     @NotBlank(groups = Validator.Create.class)
-    @Size(max = 15, groups = Validator.Create.class)
+    @Size(max = 45, groups = Validator.Create.class)
     private String ip;
 
     @NotNull(groups = Validator.Create.class)
-    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", shape = JsonFormat.Shape.STRING)
+    @JsonSerialize(using = StatTimestampSerializer.class)
+    @JsonDeserialize(using = StatTimestampDeserializer.class)
     private LocalDateTime timestamp;
 }
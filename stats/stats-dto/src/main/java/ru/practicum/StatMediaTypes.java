@@ -0,0 +1,15 @@
+package ru.practicum;
+
+import org.springframework.http.MediaType;
+
+// Бинарный формат обмена StatClient и stats-service: Smile - JSON-совместимая модель данных в бинарной записи,
+// те же DTO и аннотации Jackson. Тип совпадает с MappingJackson2SmileHttpMessageConverter
+public final class StatMediaTypes {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    public static final MediaType SMILE = MediaType.valueOf(SMILE_VALUE);
+
+    private StatMediaTypes() {
+    }
+}
@@ -0,0 +1,42 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Колоночный формат: общий массив начал бакетов и по массиву счётчиков той же длины на каждый URI
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatTimeSeriesDto {
+
+    // minute, hour или day
+    private String bucket;
+
+    @JsonSerialize(contentUsing = StatTimestampSerializer.class)
+    @JsonDeserialize(contentUsing = StatTimestampDeserializer.class)
+    private List<LocalDateTime> timestamps;
+
+    private List<Series> series;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Series {
+
+        private String app;
+
+        private String uri;
+
+        // counts[i] - хиты в бакете timestamps[i]; крайние бакеты учитывают только хиты внутри [start, end]
+        private long[] counts;
+    }
+}
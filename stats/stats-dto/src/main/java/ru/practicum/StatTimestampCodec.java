@@ -0,0 +1,121 @@
+package ru.practicum;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+
+// Разбор и печать меток времени статистики без DateTimeFormatter: формат фиксированной длины
+// "yyyy-MM-dd HH:mm:ss" (или ISO с 'T' вместо пробела) читается по позициям, без промежуточных объектов
+// и без исключений на штатном пути. Печать всегда в основном формате
+public final class StatTimestampCodec {
+
+    public static final String PATTERN = "yyyy-MM-dd HH:mm:ss";
+    public static final int LENGTH = 19;
+
+    private StatTimestampCodec() {
+    }
+
+    public static LocalDateTime parse(CharSequence text) {
+        if (text == null || text.length() != LENGTH || !separatorsValid(text.charAt(4), text.charAt(7),
+                text.charAt(10), text.charAt(13), text.charAt(16))) {
+            throw invalid(text);
+        }
+        LocalDateTime value = of(digits(text, 0, 4), digits(text, 5, 2), digits(text, 8, 2),
+                digits(text, 11, 2), digits(text, 14, 2), digits(text, 17, 2));
+        if (value == null) {
+            throw invalid(text);
+        }
+        return value;
+    }
+
+    // Для разбора прямо из буфера парсера (JsonParser.getTextCharacters), без создания строки
+    public static LocalDateTime parse(char[] buffer, int offset, int length) {
+        if (length != LENGTH || !separatorsValid(buffer[offset + 4], buffer[offset + 7],
+                buffer[offset + 10], buffer[offset + 13], buffer[offset + 16])) {
+            throw invalid(new String(buffer, offset, length));
+        }
+        LocalDateTime value = of(digits(buffer, offset, 4), digits(buffer, offset + 5, 2),
+                digits(buffer, offset + 8, 2), digits(buffer, offset + 11, 2),
+                digits(buffer, offset + 14, 2), digits(buffer, offset + 17, 2));
+        if (value == null) {
+            throw invalid(new String(buffer, offset, length));
+        }
+        return value;
+    }
+
+    public static String format(LocalDateTime value) {
+        char[] buffer = new char[LENGTH];
+        write(value, buffer, 0);
+        return new String(buffer);
+    }
+
+    // Пишет ровно LENGTH символов начиная с offset
+    public static void write(LocalDateTime value, char[] buffer, int offset) {
+        int year = value.getYear();
+        if (year < 0 || year > 9999) {
+            throw new IllegalArgumentException("Year is out of range for " + PATTERN + ": " + year);
+        }
+        put(buffer, offset, year, 4);
+        buffer[offset + 4] = '-';
+        put(buffer, offset + 5, value.getMonthValue(), 2);
+        buffer[offset + 7] = '-';
+        put(buffer, offset + 8, value.getDayOfMonth(), 2);
+        buffer[offset + 10] = ' ';
+        put(buffer, offset + 11, value.getHour(), 2);
+        buffer[offset + 13] = ':';
+        put(buffer, offset + 14, value.getMinute(), 2);
+        buffer[offset + 16] = ':';
+        put(buffer, offset + 17, value.getSecond(), 2);
+    }
+
+    private static boolean separatorsValid(char dash1, char dash2, char dateTime, char colon1, char colon2) {
+        return dash1 == '-' && dash2 == '-' && (dateTime == ' ' || dateTime == 'T') && colon1 == ':' && colon2 == ':';
+    }
+
+    // null - одно из полей не число или вне допустимого диапазона (в том числе 30 февраля)
+    private static LocalDateTime of(int year, int month, int day, int hour, int minute, int second) {
+        if ((year | month | day | hour | minute | second) < 0) {
+            return null;
+        }
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    // -1, если среди символов есть не цифра
+    private static int digits(CharSequence text, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int digits(char[] buffer, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void put(char[] buffer, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static IllegalArgumentException invalid(CharSequence text) {
+        return new IllegalArgumentException("Timestamp must match " + PATTERN + ": " + text);
+    }
+}
@@ -0,0 +1,29 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+public class StatTimestampDeserializer extends StdScalarDeserializer<LocalDateTime> {
+
+    public StatTimestampDeserializer() {
+        super(LocalDateTime.class);
+    }
+
+    @Override
+    public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.hasToken(JsonToken.VALUE_STRING)) {
+            return (LocalDateTime) context.handleUnexpectedToken(LocalDateTime.class, parser);
+        }
+        try {
+            // Разбор из внутреннего буфера парсера, строка значения не создаётся
+            return StatTimestampCodec.parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        } catch (IllegalArgumentException e) {
+            throw context.weirdStringException(parser.getText(), LocalDateTime.class, e.getMessage());
+        }
+    }
+}
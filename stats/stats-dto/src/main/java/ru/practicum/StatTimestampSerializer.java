@@ -0,0 +1,25 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+public class StatTimestampSerializer extends StdSerializer<LocalDateTime> {
+
+    // Генератор копирует символы к себе, поэтому буфер потока можно переиспользовать
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[StatTimestampCodec.LENGTH]);
+
+    public StatTimestampSerializer() {
+        super(LocalDateTime.class);
+    }
+
+    @Override
+    public void serialize(LocalDateTime value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        char[] buffer = BUFFER.get();
+        StatTimestampCodec.write(value, buffer, 0);
+        generator.writeString(buffer, 0, StatTimestampCodec.LENGTH);
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatTopDto {
+
+    // Фактически покрытое окно: запрос расширяется до границ бакетов, [start, end)
+    @JsonSerialize(using = StatTimestampSerializer.class)
+    @JsonDeserialize(using = StatTimestampDeserializer.class)
+    private LocalDateTime start;
+
+    @JsonSerialize(using = StatTimestampSerializer.class)
+    @JsonDeserialize(using = StatTimestampDeserializer.class)
+    private LocalDateTime end;
+
+    // Все хиты окна, включая URI вне списка и не подходящие под префикс
+    private long totalHits;
+
+    // URI, которого нет в списке, набрал за окно не больше стольких хитов
+    private long maxUnlistedHits;
+
+    private List<StatTopItemDto> items;
+}
@@ -0,0 +1,22 @@
+package ru.practicum;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatTopItemDto {
+
+    private String app;
+
+    private String uri;
+
+    // Оценка сверху: истинное число хитов в [minHits, hits]
+    private long hits;
+
+    private long minHits;
+}
@@ -0,0 +1,31 @@
+package ru.practicum;
+
+// Грамматика элементов uris в /stats: строка без '*' - точный URI, строка с единственной '*' в конце -
+// все URI с этим префиксом ("/events/*" - страницы всех событий, "*" - все URI). '*' в другом месте -
+// ошибка запроса: сопоставление только по префиксу позволяет искать URI по индексу словаря
+public final class StatUriPattern {
+
+    public static final char WILDCARD = '*';
+
+    private StatUriPattern() {
+    }
+
+    public static boolean isPattern(String uri) {
+        int wildcard = uri.indexOf(WILDCARD);
+        if (wildcard < 0) {
+            return false;
+        }
+        if (wildcard != uri.length() - 1) {
+            throw new IllegalArgumentException("Wildcard '*' is allowed only at the end of uri: " + uri);
+        }
+        return true;
+    }
+
+    public static String prefix(String pattern) {
+        return pattern.substring(0, pattern.length() - 1);
+    }
+
+    public static String ofPrefix(String prefix) {
+        return prefix + WILDCARD;
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Точное число уникальных IP за [start, end]: по каждому URI и по их объединению (IP, заходивший на несколько
+// URI из списка, в visitors считается один раз). URI считаются без разбивки по сервисам
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StatVisitorsDto {
+
+    @JsonSerialize(using = StatTimestampSerializer.class)
+    @JsonDeserialize(using = StatTimestampDeserializer.class)
+    private LocalDateTime start;
+
+    @JsonSerialize(using = StatTimestampSerializer.class)
+    @JsonDeserialize(using = StatTimestampDeserializer.class)
+    private LocalDateTime end;
+
+    private long visitors;
+
+    private List<Item> items;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Item {
+
+        private String uri;
+
+        private long visitors;
+    }
+}
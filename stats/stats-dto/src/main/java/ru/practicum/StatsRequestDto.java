@@ -1,13 +1,14 @@
 package ru.practicum;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.List;
 
 @Data
@@ -16,24 +17,37 @@ import java.util.List;
 @Builder
 public class StatsRequestDto {
 
+    @NotNull
+    @JsonSerialize(using = StatTimestampSerializer.class)
+    @JsonDeserialize(using = StatTimestampDeserializer.class)
     private LocalDateTime start;
+    @NotNull
+    @JsonSerialize(using = StatTimestampSerializer.class)
+    @JsonDeserialize(using = StatTimestampDeserializer.class)
     private LocalDateTime end;
+    // Точные URI и префиксы вида "/events/*", см. StatUriPattern
     private List<String> uris;
-    private Boolean unique;
+    @Builder.Default
+    private Boolean unique = false;
+    // Оценка уникальных посетителей по HyperLogLog-скетчам вместо точного COUNT(DISTINCT)
+    @Builder.Default
+    private Boolean approximate = false;
+    // Хиты URI, попавших под префикс, сворачиваются в одну строку на сервис с uri, равным самому префиксу
+    @Builder.Default
+    private Boolean collapse = false;
 
     public static StatsRequestDto of(String start, String end, List<String> uris, Boolean unique) {
-        DateTimeFormatter formatter1 = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        DateTimeFormatter formatter2 = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+        return of(start, end, uris, unique, false);
+    }
 
-        LocalDateTime startDate, endDate;
-        try {
-            startDate = LocalDateTime.parse(start, formatter1);
-            endDate = LocalDateTime.parse(end, formatter1);
-        } catch (DateTimeParseException e) {
-            startDate = LocalDateTime.parse(start, formatter2);
-            endDate = LocalDateTime.parse(end, formatter2);
-        }
+    // Принимаются "yyyy-MM-dd HH:mm:ss" и ISO "yyyy-MM-dd'T'HH:mm:ss"; иначе IllegalArgumentException
+    public static StatsRequestDto of(String start, String end, List<String> uris, Boolean unique, Boolean approximate) {
+        return of(start, end, uris, unique, approximate, false);
+    }
 
-        return new StatsRequestDto(startDate, endDate, uris, unique);
+    public static StatsRequestDto of(String start, String end, List<String> uris, Boolean unique, Boolean approximate,
+                                     Boolean collapse) {
+        return new StatsRequestDto(StatTimestampCodec.parse(start), StatTimestampCodec.parse(end),
+                uris, unique, approximate, collapse);
     }
 }
@@ -0,0 +1,181 @@
+package ru.practicum.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Нагрузочный прогон stats-service: потоки хитов POST /hit и параллельно потоки запросов GET /stats.
+// Запуск против локально поднятого сервиса (H2 или PostgreSQL):
+//   mvn -Pload package -DskipTests
+//   java -jar stats/stats-load/target/stats-load.jar --duration=60s --hit-threads=16 --uris=50000 --uri-skew=1.1
+// При заданной частоте (--hit-rate, --query-rate) задержка считается от запланированного момента отправки,
+// а не от фактического, иначе медленный ответ скрывает очередь за ним (coordinated omission)
+public class LoadGenerator {
+
+    private final LoadSettings settings;
+    private final Workload workload;
+    private final HttpClient httpClient;
+    private final OperationStats hits = new OperationStats("hit");
+    private final OperationStats queries = new OperationStats("stats");
+    private volatile boolean running = true;
+
+    public LoadGenerator(LoadSettings settings) {
+        this.settings = settings;
+        this.workload = new Workload(settings);
+        // HTTP/1.1 явно: иначе клиент пытается h2c upgrade, которого Tomcat сервиса не поддерживает
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(settings.getRequestTimeout())
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (List.of(args).contains("--help")) {
+            System.out.print(LoadSettings.usage());
+            return;
+        }
+        LoadGenerator generator = new LoadGenerator(LoadSettings.parse(args));
+        generator.run();
+    }
+
+    public void run() throws InterruptedException, IOException {
+        System.out.printf("Target %s: %d hit threads (rate %s), %d query threads (rate %s), "
+                        + "%d URIs skew %.2f, %d IPs skew %.2f, warmup %s, duration %s%n",
+                settings.getUrl(), settings.getHitThreads(), rate(settings.getHitRate()),
+                settings.getQueryThreads(), rate(settings.getQueryRate()), settings.getUris(),
+                settings.getUriSkew(), settings.getIps(), settings.getIpSkew(), settings.getWarmup(),
+                settings.getDuration());
+
+        List<Thread> workers = new ArrayList<>();
+        startWorkers(workers, "hit", settings.getHitThreads(), settings.getHitRate(), hits, 201,
+                () -> HttpRequest.newBuilder(workload.hitUri())
+                        .timeout(settings.getRequestTimeout())
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(workload.nextHit()))
+                        .build());
+        startWorkers(workers, "stats", settings.getQueryThreads(), settings.getQueryRate(), queries, 200,
+                () -> HttpRequest.newBuilder(workload.nextQuery())
+                        .timeout(settings.getRequestTimeout())
+                        .GET()
+                        .build());
+
+        long startNanos = System.nanoTime();
+        long measureFromNanos = startNanos + settings.getWarmup().toNanos();
+        long endNanos = measureFromNanos + settings.getDuration().toNanos();
+        long intervalNanos = settings.getReportInterval().toNanos();
+        long lastNanos = startNanos;
+        while (lastNanos < endNanos) {
+            long nextNanos = Math.min(lastNanos + intervalNanos, endNanos);
+            if (lastNanos < measureFromNanos) {
+                nextNanos = Math.min(nextNanos, measureFromNanos);
+            }
+            sleepUntil(nextNanos);
+            boolean measured = lastNanos >= measureFromNanos;
+            reportInterval(nextNanos - startNanos, nextNanos - lastNanos, measured);
+            lastNanos = nextNanos;
+        }
+
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(settings.getRequestTimeout().toMillis() + 1000);
+        }
+        // Ответы, пришедшие после окончания измерения, в итог не входят
+        hits.closeInterval(false);
+        queries.closeInterval(false);
+
+        double seconds = settings.getDuration().toNanos() / 1e9;
+        System.out.println();
+        System.out.println("Summary, latency in ms:");
+        summary(hits, seconds);
+        summary(queries, seconds);
+        if (!settings.getHgrmPrefix().isEmpty()) {
+            hits.writeDistribution(settings.getHgrmPrefix());
+            queries.writeDistribution(settings.getHgrmPrefix());
+            System.out.println("Distributions written to " + settings.getHgrmPrefix() + "-*.hgrm");
+        }
+    }
+
+    private void startWorkers(List<Thread> workers, String name, int threads, int rate, OperationStats stats,
+                              int expectedStatus, Supplier<HttpRequest> requests) {
+        // Целевая частота делится поровну между потоками
+        long periodNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(threads) / rate : 0;
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> work(stats, expectedStatus, requests, periodNanos),
+                    "load-" + name + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    private void work(OperationStats stats, int expectedStatus, Supplier<HttpRequest> requests, long periodNanos) {
+        long intendedNanos = System.nanoTime();
+        while (running) {
+            if (periodNanos > 0) {
+                sleepUntil(intendedNanos);
+            } else {
+                intendedNanos = System.nanoTime();
+            }
+            HttpRequest request = requests.get();
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == expectedStatus) {
+                    stats.recordSuccess(System.nanoTime() - intendedNanos);
+                } else {
+                    stats.recordError(response.statusCode());
+                }
+            } catch (IOException e) {
+                stats.recordError(OperationStats.NO_RESPONSE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            intendedNanos += periodNanos;
+        }
+    }
+
+    private void reportInterval(long elapsedNanos, long intervalNanos, boolean measured) {
+        double seconds = intervalNanos / 1e9;
+        Histogram hitInterval = hits.closeInterval(measured);
+        Histogram queryInterval = queries.closeInterval(measured);
+        System.out.printf("%s%6.1fs  hit %8.1f/s p50 %7.2f p99 %8.2f  |  stats %7.1f/s p50 %7.2f p99 %8.2f%n",
+                measured ? " " : "w", elapsedNanos / 1e9,
+                hitInterval.getTotalCount() / seconds, millis(hitInterval, 50), millis(hitInterval, 99),
+                queryInterval.getTotalCount() / seconds, millis(queryInterval, 50), millis(queryInterval, 99));
+    }
+
+    private static void summary(OperationStats stats, double seconds) {
+        Histogram total = stats.getTotal();
+        System.out.printf("  %-5s ok %9d (%8.1f/s) errors %6d %s%n", stats.getName(), total.getTotalCount(),
+                total.getTotalCount() / seconds, stats.getTotalErrors(), stats.getTotalErrorsByStatus());
+        if (total.getTotalCount() == 0) {
+            return;
+        }
+        System.out.printf("        p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  p99.99 %.2f  max %.2f%n",
+                millis(total, 50), millis(total, 90), millis(total, 99), millis(total, 99.9),
+                millis(total, 99.99), total.getMaxValue() / 1000.0);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static String rate(int rate) {
+        return rate > 0 ? rate + "/s" : "unbounded";
+    }
+
+    private static void sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
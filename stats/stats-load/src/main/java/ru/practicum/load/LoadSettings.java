@@ -0,0 +1,112 @@
+package ru.practicum.load;
+
+import lombok.Getter;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Параметры прогона в виде --ключ=значение, длительности в формате Spring: 500ms, 30s, 5m
+@Getter
+public class LoadSettings {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("url", "http://localhost:9090");
+        DEFAULTS.put("duration", "60s");
+        DEFAULTS.put("warmup", "10s");
+        DEFAULTS.put("report-interval", "5s");
+        DEFAULTS.put("hit-threads", "8");
+        DEFAULTS.put("hit-rate", "0");
+        DEFAULTS.put("query-threads", "2");
+        DEFAULTS.put("query-rate", "0");
+        DEFAULTS.put("app", "ewm-main-service");
+        DEFAULTS.put("uris", "10000");
+        DEFAULTS.put("uri-skew", "1.0");
+        DEFAULTS.put("ips", "100000");
+        DEFAULTS.put("ip-skew", "0");
+        DEFAULTS.put("query-uris", "10");
+        DEFAULTS.put("query-window", "1h");
+        DEFAULTS.put("query-unique-ratio", "0.5");
+        DEFAULTS.put("request-timeout", "10s");
+        DEFAULTS.put("hgrm-prefix", "");
+    }
+
+    private final String url;
+    private final Duration duration;
+    private final Duration warmup;
+    private final Duration reportInterval;
+    private final int hitThreads;
+    // Суммарная целевая частота, 0 - закрытая модель: каждый поток шлёт следующий запрос сразу после ответа
+    private final int hitRate;
+    private final int queryThreads;
+    private final int queryRate;
+    private final String app;
+    private final int uris;
+    private final double uriSkew;
+    private final int ips;
+    private final double ipSkew;
+    private final int queryUris;
+    private final Duration queryWindow;
+    private final double queryUniqueRatio;
+    private final Duration requestTimeout;
+    // Если задан, полные распределения задержек пишутся в <prefix>-hit.hgrm и <prefix>-stats.hgrm
+    private final String hgrmPrefix;
+
+    private LoadSettings(Map<String, String> values) {
+        this.url = values.get("url").replaceAll("/+$", "");
+        this.duration = duration(values, "duration");
+        this.warmup = duration(values, "warmup");
+        this.reportInterval = duration(values, "report-interval");
+        this.hitThreads = Integer.parseInt(values.get("hit-threads"));
+        this.hitRate = Integer.parseInt(values.get("hit-rate"));
+        this.queryThreads = Integer.parseInt(values.get("query-threads"));
+        this.queryRate = Integer.parseInt(values.get("query-rate"));
+        this.app = values.get("app");
+        this.uris = Integer.parseInt(values.get("uris"));
+        this.uriSkew = Double.parseDouble(values.get("uri-skew"));
+        this.ips = Integer.parseInt(values.get("ips"));
+        this.ipSkew = Double.parseDouble(values.get("ip-skew"));
+        this.queryUris = Integer.parseInt(values.get("query-uris"));
+        this.queryWindow = duration(values, "query-window");
+        this.queryUniqueRatio = Double.parseDouble(values.get("query-unique-ratio"));
+        this.requestTimeout = duration(values, "request-timeout");
+        this.hgrmPrefix = values.get("hgrm-prefix");
+
+        if (uris < 1 || ips < 1 || ips > 1 << 24) {
+            throw new IllegalArgumentException("uris must be positive and ips must be in 1.." + (1 << 24));
+        }
+        if (hitThreads < 0 || queryThreads < 0 || hitThreads + queryThreads == 0) {
+            throw new IllegalArgumentException("At least one of hit-threads and query-threads must be positive");
+        }
+    }
+
+    public static LoadSettings parse(String[] args) {
+        Map<String, String> values = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --key=value, got: " + arg);
+            }
+            String key = arg.substring(2, eq);
+            if (!DEFAULTS.containsKey(key)) {
+                throw new IllegalArgumentException("Unknown option --" + key + ", known: " + DEFAULTS.keySet());
+            }
+            values.put(key, arg.substring(eq + 1));
+        }
+        return new LoadSettings(values);
+    }
+
+    public static String usage() {
+        StringBuilder usage = new StringBuilder("Options (default):\n");
+        DEFAULTS.forEach((key, value) -> usage.append("  --").append(key).append('=').append(value).append('\n'));
+        return usage.toString();
+    }
+
+    private static Duration duration(Map<String, String> values, String key) {
+        return DurationStyle.detectAndParse(values.get(key));
+    }
+}
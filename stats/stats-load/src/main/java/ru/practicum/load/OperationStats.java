@@ -0,0 +1,78 @@
+package ru.practicum.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Задержки успешных запросов одного типа в HdrHistogram (микросекунды, 3 значащие цифры) и счётчики ошибок.
+// Recorder позволяет снимать интервальные гистограммы без остановки рабочих потоков
+public class OperationStats {
+
+    // Код для ошибок ввода-вывода и таймаутов, когда HTTP-статуса нет
+    public static final int NO_RESPONSE = -1;
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final String name;
+    private final Recorder recorder = new Recorder(MAX_LATENCY_MICROS, 3);
+    private final ConcurrentMap<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+    private final Histogram total = new Histogram(MAX_LATENCY_MICROS, 3);
+    private final Map<Integer, Long> totalErrors = new TreeMap<>();
+    private Histogram interval;
+
+    public OperationStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void recordSuccess(long latencyNanos) {
+        recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_LATENCY_MICROS));
+    }
+
+    public void recordError(int status) {
+        errors.computeIfAbsent(status, key -> new LongAdder()).increment();
+    }
+
+    // Закрывает интервал; при measured = false (прогрев) интервал не попадает в итог
+    public Histogram closeInterval(boolean measured) {
+        interval = recorder.getIntervalHistogram(interval);
+        Map<Integer, Long> intervalErrors = new TreeMap<>();
+        errors.forEach((status, count) -> intervalErrors.put(status, count.sumThenReset()));
+        if (measured) {
+            total.add(interval);
+            intervalErrors.forEach((status, count) -> totalErrors.merge(status, count, Long::sum));
+        }
+        return interval;
+    }
+
+    public Histogram getTotal() {
+        return total;
+    }
+
+    public long getTotalErrors() {
+        return totalErrors.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public Map<Integer, Long> getTotalErrorsByStatus() {
+        return totalErrors;
+    }
+
+    public void writeDistribution(String prefix) throws IOException {
+        try (PrintStream out = new PrintStream(new FileOutputStream(prefix + "-" + name + ".hgrm"))) {
+            // Значения в микросекундах, в файле - миллисекунды
+            total.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+}
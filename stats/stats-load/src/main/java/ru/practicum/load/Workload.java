@@ -0,0 +1,80 @@
+package ru.practicum.load;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.practicum.StatDto;
+import ru.practicum.StatTimestampCodec;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Генерация запросов: хиты по URI "/events/{ранг+1}" и IP 10.x.y.z с независимыми распределениями Ципфа,
+// запросы /stats по популярным URI за последнее окно queryWindow
+public class Workload {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String url;
+    private final String app;
+    private final ZipfDistribution uris;
+    private final ZipfDistribution ips;
+    private final int queryUris;
+    private final Duration queryWindow;
+    private final double queryUniqueRatio;
+
+    public Workload(LoadSettings settings) {
+        this.url = settings.getUrl();
+        this.app = settings.getApp();
+        this.uris = new ZipfDistribution(settings.getUris(), settings.getUriSkew());
+        this.ips = new ZipfDistribution(settings.getIps(), settings.getIpSkew());
+        this.queryUris = settings.getQueryUris();
+        this.queryWindow = settings.getQueryWindow();
+        this.queryUniqueRatio = settings.getQueryUniqueRatio();
+    }
+
+    public URI hitUri() {
+        return URI.create(url + "/hit");
+    }
+
+    public byte[] nextHit() {
+        StatDto hit = StatDto.builder()
+                .app(app)
+                .uri(eventUri(uris.sample()))
+                .ip(ip(ips.sample()))
+                .timestamp(LocalDateTime.now())
+                .build();
+        try {
+            return mapper.writeValueAsBytes(hit);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public URI nextQuery() {
+        LocalDateTime now = LocalDateTime.now();
+        StringBuilder query = new StringBuilder(url)
+                .append("/stats?start=").append(encode(StatTimestampCodec.format(now.minus(queryWindow))))
+                .append("&end=").append(encode(StatTimestampCodec.format(now.plusMinutes(1))))
+                .append("&unique=").append(ThreadLocalRandom.current().nextDouble() < queryUniqueRatio);
+        // Повторы URI допустимы: сервис всё равно сводит список к множеству
+        for (int i = 0; i < Math.min(queryUris, uris.size()); i++) {
+            query.append("&uris=").append(eventUri(uris.sample()));
+        }
+        return URI.create(query.toString());
+    }
+
+    private static String eventUri(int rank) {
+        return "/events/" + (rank + 1);
+    }
+
+    private static String ip(int index) {
+        return "10." + (index >>> 16 & 0xFF) + "." + (index >>> 8 & 0xFF) + "." + (index & 0xFF);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
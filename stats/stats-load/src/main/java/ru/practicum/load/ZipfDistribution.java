@@ -0,0 +1,45 @@
+package ru.practicum.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Ранги 0..n-1 с вероятностью, пропорциональной 1/(rank+1)^skew; skew = 0 - равномерное распределение.
+// Таблица накопленных вероятностей занимает 8 байт на ранг, выборка - двоичный поиск
+public class ZipfDistribution {
+
+    private final int size;
+    private final double[] cumulative;
+
+    public ZipfDistribution(int size, double skew) {
+        if (size < 1 || skew < 0) {
+            throw new IllegalArgumentException("Zipf size must be positive and skew non-negative");
+        }
+        this.size = size;
+        if (skew == 0) {
+            this.cumulative = null;
+            return;
+        }
+        this.cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public int sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (cumulative == null) {
+            return random.nextInt(size);
+        }
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.practicum.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+// Реплика для чтения: основной пул настраивается как обычно (spring.datasource.*), пул реплики -
+// свойствами stats.replica.datasource.* (url, username, password, hikari.*). Пулы не участвуют в автосвязывании,
+// поэтому health и JPA видят только маршрутизирующий источник, а недоступная реплика не роняет health
+@Configuration
+@ConditionalOnProperty(name = "stats.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    private final DataSourceProperties primaryProperties;
+    private final Binder binder;
+    private final MeterRegistry meterRegistry;
+
+    public ReplicaDataSourceConfig(DataSourceProperties primaryProperties, Environment environment,
+                                   MeterRegistry meterRegistry) {
+        this.primaryProperties = primaryProperties;
+        this.binder = Binder.get(environment);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean(autowireCandidate = false)
+    public HikariDataSource primaryDataSource() {
+        HikariDataSource dataSource = primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("stats-primary");
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return dataSource;
+    }
+
+    @Bean(autowireCandidate = false)
+    public HikariDataSource replicaDataSource() {
+        DataSourceProperties properties = binder.bind("stats.replica.datasource", DataSourceProperties.class)
+                .orElseThrow(() -> new IllegalStateException(
+                        "stats.replica.datasource.url must be set when stats.replica.enabled=true"));
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("stats-replica");
+        dataSource.setReadOnly(true);
+        // Недоступная реплика не должна задерживать запрос на стандартные 30 секунд ожидания соединения
+        dataSource.setConnectionTimeout(Duration.ofSeconds(2).toMillis());
+        binder.bind("stats.replica.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Value("${stats.replica.max-lag:PT5S}") Duration maxLag,
+                                               @Value("${stats.replica.check-interval:PT1S}") Duration checkInterval) {
+        return new ReplicaLagMonitor(primaryDataSource(), replicaDataSource(), maxLag, checkInterval, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaLagMonitor replicaLagMonitor) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primaryDataSource(),
+                replicaDataSource(), replicaLagMonitor, meterRegistry));
+    }
+}
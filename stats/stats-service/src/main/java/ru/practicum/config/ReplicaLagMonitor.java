@@ -0,0 +1,95 @@
+package ru.practicum.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Отставание реплики по строке stat_replica_heartbeat: монитор пишет в основную базу текущее время и читает
+// строку из реплики. Отставание не меньше фактического и не зависит от способа репликации; время берётся
+// с часов сервиса, поэтому расхождение часов баз не влияет. Проверка идёт в своём потоке, чтобы долгие
+// проходы свёртки в общем планировщике не задерживали пульс
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final long maxLagMillis;
+    private final Duration checkInterval;
+    private final ScheduledExecutorService executor;
+    // null - ещё не проверялась
+    private volatile Boolean replicaUsable;
+    private volatile long lagMillis = -1;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, Duration maxLag, Duration checkInterval,
+                             MeterRegistry meterRegistry) {
+        this.primaryJdbcTemplate = new JdbcTemplate(primary);
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+        int timeoutSeconds = (int) Math.max(1, checkInterval.toSeconds());
+        this.primaryJdbcTemplate.setQueryTimeout(timeoutSeconds);
+        this.replicaJdbcTemplate.setQueryTimeout(timeoutSeconds);
+        this.maxLagMillis = maxLag.toMillis();
+        this.checkInterval = checkInterval;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stats-replica-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        meterRegistry.gauge("stats.replica.lag", this, monitor -> monitor.lagMillis);
+        meterRegistry.gauge("stats.replica.usable", this, monitor -> monitor.isReplicaUsable() ? 1 : 0);
+    }
+
+    // После инициализации схемы; до первой проверки все запросы идут в основную базу
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor.scheduleWithFixedDelay(this::check, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isReplicaUsable() {
+        return Boolean.TRUE.equals(replicaUsable);
+    }
+
+    public void markUnavailable(Exception exception) {
+        update(false, "connection failed: " + exception.getMessage());
+    }
+
+    void check() {
+        try {
+            primaryJdbcTemplate.update("UPDATE stat_replica_heartbeat SET beat_millis = ? WHERE id = 1",
+                    System.currentTimeMillis());
+        } catch (Exception exception) {
+            log.warn("check - heartbeat write failed: {}", exception.getMessage());
+        }
+        try {
+            Long beat = replicaJdbcTemplate.queryForObject(
+                    "SELECT beat_millis FROM stat_replica_heartbeat WHERE id = 1", Long.class);
+            lagMillis = System.currentTimeMillis() - (beat == null ? 0 : beat);
+            update(lagMillis <= maxLagMillis, "lag " + lagMillis + " ms, limit " + maxLagMillis + " ms");
+        } catch (Exception exception) {
+            lagMillis = -1;
+            update(false, "check failed: " + exception.getMessage());
+        }
+    }
+
+    private void update(boolean usable, String reason) {
+        if (!Objects.equals(usable, replicaUsable)) {
+            log.info("check - {} reads to {}: {}", usable ? "routing" : "falling back", usable ? "replica" : "primary",
+                    reason);
+        }
+        replicaUsable = usable;
+    }
+}
@@ -0,0 +1,65 @@
+package ru.practicum.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+// Соединения read-only транзакций берутся из реплики, пока ReplicaLagMonitor считает её пригодной, остальные -
+// из основной базы. Маршрут выбирается при получении соединения, поэтому источник должен быть обёрнут
+// в LazyConnectionDataSourceProxy: иначе соединение берётся в начале транзакции, до выставления признака readOnly
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final DataSource primary;
+    private final ReplicaLagMonitor monitor;
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor monitor,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.monitor = monitor;
+        this.primaryConnections = meterRegistry.counter("stats.replica.connections", "route", "primary");
+        this.replicaConnections = meterRegistry.counter("stats.replica.connections", "route", "replica");
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && monitor.isReplicaUsable()
+                ? Route.REPLICA
+                : Route.PRIMARY;
+    }
+
+    // Реплика, не выдавшая соединение, исключается до следующей проверки, а запрос уходит в основную базу
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        if (target == primary) {
+            primaryConnections.increment();
+            return primary.getConnection();
+        }
+        try {
+            Connection connection = target.getConnection();
+            replicaConnections.increment();
+            return connection;
+        } catch (SQLException exception) {
+            monitor.markUnavailable(exception);
+            primaryConnections.increment();
+            return primary.getConnection();
+        }
+    }
+}
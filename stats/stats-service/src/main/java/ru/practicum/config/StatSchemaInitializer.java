@@ -0,0 +1,189 @@
+package ru.practicum.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.sql.init.SqlDataSourceScriptDatabaseInitializer;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.mapper.IpAddressCodec;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Скрипты schema*.sql плюс перенос таблиц, созданных до словарей app/uri. Старые stat, stat_rollup и stat_hll
+// с текстовыми колонками app и uri перед скриптами переименовываются в *_legacy вместе с секциями, индексами и
+// последовательностью id; скрипты создают новые таблицы, и строки переносятся в них с id из stat_app и stat_uri.
+// id хитов сохраняются, поэтому водяные знаки агрегатов остаются верными. IP в старом текстовом виде кодируются
+// IpAddressCodec. Перенос идёт одной транзакцией до приёма хитов; если он не удался, сервис не стартует, а при
+// следующем запуске перенос повторяется с таблиц *_legacy. Только PostgreSQL: на H2 таблицы создаются заново
+@Component
+@Slf4j
+public class StatSchemaInitializer extends SqlDataSourceScriptDatabaseInitializer {
+
+    private static final List<String> MIGRATED_TABLES = List.of("stat", "stat_rollup", "stat_hll");
+    private static final String LEGACY_SUFFIX = "_legacy";
+    private static final int BATCH_SIZE = 1000;
+
+    private final SqlInitializationProperties properties;
+    private final IpAddressCodec ipAddressCodec;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public StatSchemaInitializer(DataSource dataSource, SqlInitializationProperties properties,
+                                 IpAddressCodec ipAddressCodec) {
+        super(dataSource, properties);
+        this.properties = properties;
+        this.ipAddressCodec = ipAddressCodec;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        // Внутри транзакции PostgreSQL JDBC читает старую stat курсором, а не целиком в память
+        this.jdbcTemplate.setFetchSize(BATCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Override
+    public boolean initializeDatabase() {
+        boolean migrate = properties.getMode() == DatabaseInitializationMode.ALWAYS && isPostgres();
+        if (migrate) {
+            transactionTemplate.executeWithoutResult(status -> renameLegacyTables());
+        }
+        boolean initialized = super.initializeDatabase();
+        if (migrate) {
+            transactionTemplate.executeWithoutResult(status -> copyLegacyTables());
+        }
+        return initialized;
+    }
+
+    private void renameLegacyTables() {
+        List<String> legacy = jdbcTemplate.queryForList("""
+                SELECT table_name
+                FROM information_schema.columns
+                WHERE table_schema = current_schema() AND column_name = 'app'
+                  AND table_name IN ('stat', 'stat_rollup', 'stat_hll')
+                """, String.class);
+        for (String table : legacy) {
+            // Имена секций, индексов и последовательности заняли бы имена, которые создают скрипты
+            List<String> indexes = jdbcTemplate.queryForList("""
+                    SELECT index_class.relname
+                    FROM pg_index i
+                    JOIN pg_class index_class ON index_class.oid = i.indexrelid
+                    WHERE i.indrelid = to_regclass(?)
+                       OR i.indrelid IN (SELECT inhrelid FROM pg_inherits WHERE inhparent = to_regclass(?))
+                    """, String.class, table, table);
+            for (String index : indexes) {
+                jdbcTemplate.execute("ALTER INDEX " + index + " RENAME TO " + index + LEGACY_SUFFIX);
+            }
+            List<String> partitions = jdbcTemplate.queryForList("""
+                    SELECT child.relname
+                    FROM pg_inherits i
+                    JOIN pg_class child ON child.oid = i.inhrelid
+                    WHERE i.inhparent = to_regclass(?)
+                    """, String.class, table);
+            for (String partition : partitions) {
+                jdbcTemplate.execute("ALTER TABLE " + partition + " RENAME TO " + partition + LEGACY_SUFFIX);
+            }
+            if ("stat".equals(table)) {
+                String sequence = jdbcTemplate.queryForObject("SELECT pg_get_serial_sequence('stat', 'id')",
+                        String.class);
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RENAME TO stat_id_seq" + LEGACY_SUFFIX);
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table + " RENAME TO " + table + LEGACY_SUFFIX);
+            log.info("renameLegacyTables - {} renamed to {}{} for migration to dictionary ids", table, table,
+                    LEGACY_SUFFIX);
+        }
+    }
+
+    private void copyLegacyTables() {
+        for (String table : MIGRATED_TABLES) {
+            String legacy = table + LEGACY_SUFFIX;
+            if (!jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, legacy)) {
+                continue;
+            }
+            jdbcTemplate.update("INSERT INTO stat_app (name) SELECT DISTINCT app FROM " + legacy
+                    + " ON CONFLICT (name) DO NOTHING");
+            jdbcTemplate.update("INSERT INTO stat_uri (name) SELECT DISTINCT uri FROM " + legacy
+                    + " ON CONFLICT (name) DO NOTHING");
+            long copied = switch (table) {
+                case "stat" -> copyStats(legacy);
+                case "stat_rollup" -> jdbcTemplate.update("""
+                        INSERT INTO stat_rollup (bucket_unit, bucket_start, app_id, uri_id, hits)
+                        SELECT l.bucket_unit, l.bucket_start, a.id, u.id, l.hits
+                        FROM stat_rollup_legacy l
+                        JOIN stat_app a ON a.name = l.app
+                        JOIN stat_uri u ON u.name = l.uri
+                        """);
+                case "stat_hll" -> jdbcTemplate.update("""
+                        INSERT INTO stat_hll (bucket_start, app_id, uri_id, sketch)
+                        SELECT l.bucket_start, a.id, u.id, l.sketch
+                        FROM stat_hll_legacy l
+                        JOIN stat_app a ON a.name = l.app
+                        JOIN stat_uri u ON u.name = l.uri
+                        """);
+                default -> throw new IllegalStateException("Unexpected legacy table " + legacy);
+            };
+            jdbcTemplate.execute("DROP TABLE " + legacy + " CASCADE");
+            log.info("copyLegacyTables - {} rows copied from {} to {}", copied, legacy, table);
+        }
+    }
+
+    // Хиты переносятся с прежними id, после чего последовательность id новой stat продолжает с максимального
+    private long copyStats(String legacy) {
+        String ipType = jdbcTemplate.queryForObject("""
+                SELECT data_type
+                FROM information_schema.columns
+                WHERE table_schema = current_schema() AND table_name = ? AND column_name = 'ip'
+                """, String.class, legacy);
+        String select = "SELECT l.id, a.id AS app_id, u.id AS uri_id, l.ip, l.time_stamp FROM " + legacy + " l "
+                + "JOIN stat_app a ON a.name = l.app JOIN stat_uri u ON u.name = l.uri";
+        long copied;
+        if ("bytea".equals(ipType)) {
+            copied = jdbcTemplate.update("INSERT INTO stat (id, app_id, uri_id, ip, time_stamp) " + select);
+        } else {
+            copied = copyTextIpStats(select);
+        }
+        jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence('stat', 'id'), MAX(id)) FROM stat",
+                Long.class);
+        return copied;
+    }
+
+    private long copyTextIpStats(String select) {
+        String insert = "INSERT INTO stat (id, app_id, uri_id, ip, time_stamp) VALUES (?, ?, ?, ?, ?)";
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        long[] counts = new long[2];
+        jdbcTemplate.query(select, rs -> {
+            byte[] ip;
+            try {
+                ip = ipAddressCodec.encode(rs.getString("ip"));
+            } catch (IllegalArgumentException exception) {
+                counts[1]++;
+                log.warn("copyTextIpStats - stat {} skipped: {}", rs.getLong("id"), exception.getMessage());
+                return;
+            }
+            batch.add(new Object[]{rs.getLong("id"), rs.getInt("app_id"), rs.getInt("uri_id"), ip,
+                    rs.getTimestamp("time_stamp")});
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(insert, batch);
+                counts[0] += batch.size();
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(insert, batch);
+            counts[0] += batch.size();
+        }
+        if (counts[1] > 0) {
+            log.warn("copyTextIpStats - {} stats with unparsable IP addresses were not copied", counts[1]);
+        }
+        return counts[0];
+    }
+
+    private boolean isPostgres() {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product);
+    }
+}
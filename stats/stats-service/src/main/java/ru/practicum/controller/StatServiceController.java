@@ -1,18 +1,47 @@
 package ru.practicum.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.LiveStatDto;
+import ru.practicum.StatCountDto;
 import ru.practicum.StatDto;
+import ru.practicum.StatMediaTypes;
 import ru.practicum.StatResponseDto;
+import ru.practicum.StatTimeSeriesDto;
+import ru.practicum.StatTimestampCodec;
+import ru.practicum.StatTopDto;
+import ru.practicum.StatVisitorsDto;
 import ru.practicum.StatsRequestDto;
 import ru.practicum.Validator;
+import ru.practicum.ingest.HitDeduplicator;
+import ru.practicum.ingest.HitIngestor;
+import ru.practicum.ingest.HitLogIngestor;
+import ru.practicum.model.BucketUnit;
+import ru.practicum.service.LiveStatService;
 import ru.practicum.service.StatService;
+import ru.practicum.service.StatTimeSeriesService;
+import ru.practicum.service.StatTopService;
+import ru.practicum.service.StatVisitorService;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 @RestController
 @RequiredArgsConstructor
@@ -20,27 +49,191 @@ import java.util.List;
 @Slf4j
 public class StatServiceController {
 
+    private static final SmileFactory SMILE_FACTORY = new SmileFactory();
+
     private final StatService statService;
+    private final LiveStatService liveStatService;
+    private final StatTopService statTopService;
+    private final StatTimeSeriesService timeSeriesService;
+    private final StatVisitorService visitorService;
+    private final HitIngestor hitIngestor;
+    private final HitLogIngestor hitLogIngestor;
+    private final HitDeduplicator deduplicator;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
     public ResponseEntity<StatDto> addStatEvent(
             @RequestBody @Validated(Validator.Create.class) StatDto statDto) {
 
-        log.info("POST /hit received: {}", statDto);
+        log.debug("POST /hit received: {}", statDto);
+        if (deduplicator.isDuplicate(statDto)) {
+            return new ResponseEntity<>(statDto, HttpStatus.CREATED);
+        }
+        if (hitLogIngestor.isEnabled()) {
+            hitLogIngestor.append(statDto);
+            return new ResponseEntity<>(statDto, HttpStatus.CREATED);
+        }
+        if (hitIngestor.isEnabled()) {
+            hitIngestor.ingest(statDto);
+            return new ResponseEntity<>(statDto, HttpStatus.CREATED);
+        }
         StatDto statEvent = statService.createStat(statDto);
-        log.info("POST /hit - statDto saved: {}", statDto);
+        log.debug("POST /hit - statDto saved: {}", statDto);
         return new ResponseEntity<>(statEvent, HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/hits", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE,
+            StatMediaTypes.SMILE_VALUE})
+    public ResponseEntity<StatCountDto> addStatEvents(HttpServletRequest request) throws IOException {
+        log.info("POST /hits received: contentType={}", request.getContentType());
+        // JSON-массив, NDJSON и Smile читаются потоково, без загрузки всего тела в память
+        ObjectReader reader = objectMapper.readerFor(StatDto.class);
+        if (StatMediaTypes.SMILE.isCompatibleWith(MediaType.parseMediaType(request.getContentType()))) {
+            reader = reader.with(SMILE_FACTORY);
+        }
+        try (MappingIterator<StatDto> stats = reader.readValues(request.getInputStream())) {
+            long count = statService.createStats(iterate(stats));
+            log.info("POST /hits - {} stats saved", count);
+            return new ResponseEntity<>(new StatCountDto(count), HttpStatus.CREATED);
+        }
+    }
+
     @GetMapping("/stats")
     public ResponseEntity<List<StatResponseDto>> readStatEvent(@RequestParam("start") String start,
                                                                @RequestParam("end") String end,
                                                                @RequestParam(required = false) List<String> uris,
-                                                               @RequestParam(defaultValue = "false") boolean unique) {
-        StatsRequestDto request = StatsRequestDto.of(start, end, uris, unique);
-        log.info("GET /stats - start={}, end={}, uris={}, unique={}", start, end, uris, unique);
+                                                               @RequestParam(defaultValue = "false") boolean unique,
+                                                               @RequestParam(defaultValue = "false") boolean approximate,
+                                                               @RequestParam(defaultValue = "false") boolean collapse) {
+        StatsRequestDto request = StatsRequestDto.of(start, end, uris, unique, approximate, collapse);
+        log.info("GET /stats - start={}, end={}, uris={}, unique={}, approximate={}, collapse={}",
+                start, end, uris, unique, approximate, collapse);
         List<StatResponseDto> stats = statService.readStat(request);
         log.info("GET /stats - returning {} records", stats.size());
         return new ResponseEntity<>(stats, HttpStatus.OK);
     }
+
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void readStatEventStream(@RequestParam("start") String start,
+                                    @RequestParam("end") String end,
+                                    @RequestParam(required = false) List<String> uris,
+                                    @RequestParam(defaultValue = "false") boolean unique,
+                                    @RequestParam(defaultValue = "false") boolean approximate,
+                                    @RequestParam(defaultValue = "false") boolean collapse,
+                                    HttpServletResponse response) throws IOException {
+        StatsRequestDto request = StatsRequestDto.of(start, end, uris, unique, approximate, collapse);
+        log.info("GET /stats (ndjson) - start={}, end={}, uris={}, unique={}, approximate={}, collapse={}",
+                start, end, uris, unique, approximate, collapse);
+        long count = writeStatStream(request, response);
+        log.info("GET /stats (ndjson) - streamed {} records", count);
+    }
+
+    // Тот же запрос, что и GET /stats, но список URI передаётся в теле: длинный URL упирается в лимит заголовков
+    @PostMapping("/stats/query")
+    public ResponseEntity<List<StatResponseDto>> queryStatEvent(@RequestBody @Valid StatsRequestDto request) {
+        log.info("POST /stats/query - start={}, end={}, uris count={}, unique={}, approximate={}",
+                request.getStart(), request.getEnd(), request.getUris() == null ? 0 : request.getUris().size(),
+                request.getUnique(), request.getApproximate());
+        List<StatResponseDto> stats = statService.readStat(request);
+        log.info("POST /stats/query - returning {} records", stats.size());
+        return new ResponseEntity<>(stats, HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/stats/query", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void queryStatEventStream(@RequestBody @Valid StatsRequestDto request,
+                                     HttpServletResponse response) throws IOException {
+        log.info("POST /stats/query (ndjson) - start={}, end={}, uris count={}, unique={}, approximate={}",
+                request.getStart(), request.getEnd(), request.getUris() == null ? 0 : request.getUris().size(),
+                request.getUnique(), request.getApproximate());
+        long count = writeStatStream(request, response);
+        log.info("POST /stats/query (ndjson) - streamed {} records", count);
+    }
+
+    @GetMapping("/stats/live")
+    public ResponseEntity<List<LiveStatDto>> readLiveStats(@RequestParam(required = false) List<String> uris,
+                                                           @RequestParam(defaultValue = "100") int limit) {
+        log.info("GET /stats/live - uris={}, limit={}", uris, limit);
+        return new ResponseEntity<>(liveStatService.getLiveStats(uris, limit), HttpStatus.OK);
+    }
+
+    // Популярные URI окна по скетчам бакетов: hits - оценка сверху, minHits - снизу
+    @GetMapping("/stats/top")
+    public ResponseEntity<StatTopDto> readTopStats(@RequestParam("start") String start,
+                                                   @RequestParam("end") String end,
+                                                   @RequestParam(defaultValue = "10") int limit,
+                                                   @RequestParam(required = false) String prefix) {
+        log.info("GET /stats/top - start={}, end={}, limit={}, prefix={}", start, end, limit, prefix);
+        StatTopDto top = statTopService.getTop(StatTimestampCodec.parse(start), StatTimestampCodec.parse(end),
+                limit, prefix);
+        log.info("GET /stats/top - returning {} records", top.getItems().size());
+        return new ResponseEntity<>(top, HttpStatus.OK);
+    }
+
+    // Ряды по бакетам в колоночном виде: timestamps и counts каждого URI одной длины
+    @GetMapping("/stats/timeseries")
+    public ResponseEntity<StatTimeSeriesDto> readTimeSeries(@RequestParam("start") String start,
+                                                            @RequestParam("end") String end,
+                                                            @RequestParam List<String> uris,
+                                                            @RequestParam(defaultValue = "hour") String bucket,
+                                                            @RequestParam(defaultValue = "false") boolean unique) {
+        log.info("GET /stats/timeseries - start={}, end={}, uris={}, bucket={}, unique={}",
+                start, end, uris, bucket, unique);
+        StatTimeSeriesDto series = timeSeriesService.getTimeSeries(StatTimestampCodec.parse(start),
+                StatTimestampCodec.parse(end), uris, BucketUnit.valueOf(bucket.toUpperCase()), unique);
+        log.info("GET /stats/timeseries - returning {} series of {} buckets",
+                series.getSeries().size(), series.getTimestamps().size());
+        return new ResponseEntity<>(series, HttpStatus.OK);
+    }
+
+    // Точные уникальные IP по каждому URI и по всему списку без повторов
+    @GetMapping("/stats/visitors")
+    public ResponseEntity<StatVisitorsDto> readVisitors(@RequestParam("start") String start,
+                                                        @RequestParam("end") String end,
+                                                        @RequestParam List<String> uris) {
+        log.info("GET /stats/visitors - start={}, end={}, uris={}", start, end, uris);
+        StatVisitorsDto visitors = visitorService.getVisitors(StatTimestampCodec.parse(start),
+                StatTimestampCodec.parse(end), uris);
+        log.info("GET /stats/visitors - returning {} visitors of {} URIs",
+                visitors.getVisitors(), visitors.getItems().size());
+        return new ResponseEntity<>(visitors, HttpStatus.OK);
+    }
+
+    private long writeStatStream(StatsRequestDto request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        ObjectWriter writer = objectMapper.writerFor(StatResponseDto.class);
+        OutputStream out = response.getOutputStream();
+        AtomicLong count = new AtomicLong();
+        statService.streamStat(request, stat -> {
+            try {
+                out.write(writer.writeValueAsBytes(stat));
+                out.write('\n');
+                count.incrementAndGet();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return count.get();
+    }
+
+    private static Iterator<StatDto> iterate(MappingIterator<StatDto> stats) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return stats.hasNextValue();
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Malformed hits payload: " + e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public StatDto next() {
+                try {
+                    return stats.nextValue();
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("Malformed hits payload: " + e.getMessage(), e);
+                }
+            }
+        };
+    }
 }
\ No newline at end of file
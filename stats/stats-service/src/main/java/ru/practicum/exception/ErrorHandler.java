@@ -4,29 +4,30 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingRequestHeaderException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import ru.practicum.StatTimestampCodec;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 @Slf4j
 @RestControllerAdvice
 public class ErrorHandler {
 
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
     @ExceptionHandler({
             MethodArgumentNotValidException.class,
             MissingRequestHeaderException.class,
             ConstraintViolationException.class,
             MissingServletRequestParameterException.class,
             MethodArgumentTypeMismatchException.class,
+            HttpMessageNotReadableException.class,
             WrongTimeException.class,
             IllegalArgumentException.class
     })
@@ -34,13 +35,24 @@ public class ErrorHandler {
         return buildResponse(HttpStatus.BAD_REQUEST, "Incorrectly made request.", exception, request);
     }
 
+    // В ответе - какая возможность выключена и каким свойством
+    @ExceptionHandler(FeatureDisabledException.class)
+    public ResponseEntity<ErrorResponse> handleFeatureDisabled(Exception exception, HttpServletRequest request) {
+        return buildResponse(HttpStatus.NOT_FOUND, exception.getMessage(), exception, request);
+    }
+
+    @ExceptionHandler(IngestOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleServiceUnavailable(Exception exception, HttpServletRequest request) {
+        return buildResponse(HttpStatus.SERVICE_UNAVAILABLE, "Ingest pipeline is overloaded.", exception, request);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleInternalServerError(Exception exception, HttpServletRequest request) {
         return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error", exception, request);
     }
 
     private ResponseEntity<ErrorResponse> buildResponse(HttpStatus httpStatus, String message, Exception exception, HttpServletRequest request) {
-        String timestamp = LocalDateTime.now().format(FORMATTER);
+        String timestamp = StatTimestampCodec.format(LocalDateTime.now());
         String status = httpStatus.name();
         String reason = httpStatus.getReasonPhrase();
         String errorMessage = exception.getMessage();
@@ -55,8 +67,10 @@ public class ErrorHandler {
             log.warn(logMessage);
         }
 
+        // Тело ошибки всегда JSON, в том числе для запросов с Accept: application/x-ndjson
         return ResponseEntity
                 .status(httpStatus)
+                .contentType(MediaType.APPLICATION_JSON)
                 .body(new ErrorResponse(status, reason, message, timestamp));
     }
 }
\ No newline at end of file
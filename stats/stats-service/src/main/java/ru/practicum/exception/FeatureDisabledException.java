@@ -0,0 +1,8 @@
+package ru.practicum.exception;
+
+// Запрос к возможности, выключенной в конфигурации сервиса: 404, а не ошибка сервера
+public class FeatureDisabledException extends BaseException {
+    public FeatureDisabledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,105 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatDto;
+import ru.practicum.mapper.IpAddressCodec;
+import ru.practicum.sketch.RotatingBloomFilter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+// Подавление повторных хитов POST /hit: хит с теми же (app, uri, ip), пришедший в пределах window после
+// принятого, не сохраняется. Ключи хранит RotatingBloomFilter с постоянной памятью: повтор может быть замечен
+// чуть позже window (до window / (generations - 1)), а с вероятностью ~fpp отброшен и хит, которого раньше не
+// было. Окно отсчитывается по времени прихода хита на сервис, поэтому пакеты POST /hits (в том числе загрузка
+// старых хитов) не фильтруются: в них повтор по времени прихода не отличить от разных посещений
+@Component
+@Slf4j
+public class HitDeduplicator {
+
+    // Проверка и запись ключа атомарны для одного ключа: одновременные повторы не проходят оба
+    private static final int LOCK_STRIPES = 64;
+
+    private final boolean enabled;
+    private final RotatingBloomFilter filter;
+    private final IpAddressCodec ipAddressCodec;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final Counter suppressed;
+    private final Counter passed;
+
+    public HitDeduplicator(@Value("${stats.ingest.dedup.enabled:false}") boolean enabled,
+                           @Value("${stats.ingest.dedup.window:PT10S}") Duration window,
+                           @Value("${stats.ingest.dedup.generations:4}") int generations,
+                           @Value("${stats.ingest.dedup.expected-insertions:200000}") long expectedInsertions,
+                           @Value("${stats.ingest.dedup.fpp:0.001}") double fpp,
+                           IpAddressCodec ipAddressCodec,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.ipAddressCodec = ipAddressCodec;
+        if (enabled) {
+            if (generations < 2) {
+                throw new IllegalArgumentException("stats.ingest.dedup.generations must be at least 2");
+            }
+            long periodMillis = Math.max(1, window.toMillis() / (generations - 1));
+            this.filter = new RotatingBloomFilter(expectedInsertions, fpp, periodMillis, generations);
+            meterRegistry.gauge("stats.ingest.dedup.bytes", filter, RotatingBloomFilter::sizeInBytes);
+            log.info("HitDeduplicator - window {}, {} generations of {} ms, {} bytes", window, generations,
+                    periodMillis, filter.sizeInBytes());
+        } else {
+            this.filter = null;
+        }
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        this.suppressed = meterRegistry.counter("stats.ingest.dedup.suppressed");
+        this.passed = meterRegistry.counter("stats.ingest.dedup.passed");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Ключ занимается до вставки хита: если вставка потом не удастся, повтор клиента в пределах окна
+    // будет отброшен. Это плата за то, что два одновременных одинаковых хита не сохраняются оба
+    public boolean isDuplicate(StatDto hit) {
+        if (!enabled) {
+            return false;
+        }
+        long key = key(hit);
+        boolean duplicate;
+        synchronized (locks[(int) (key >>> 58)]) {
+            long now = System.currentTimeMillis();
+            duplicate = filter.mightContain(key, now);
+            if (!duplicate) {
+                filter.put(key, now);
+            }
+        }
+        if (duplicate) {
+            suppressed.increment();
+            log.debug("isDuplicate - duplicate hit suppressed: {}", hit);
+        } else {
+            passed.increment();
+        }
+        return duplicate;
+    }
+
+    // IP берётся в закодированном виде: разные записи одного IPv6-адреса дают один ключ
+    private long key(StatDto hit) {
+        byte[] app = hit.getApp().getBytes(StandardCharsets.UTF_8);
+        byte[] uri = hit.getUri().getBytes(StandardCharsets.UTF_8);
+        byte[] ip = ipAddressCodec.encode(hit.getIp());
+        return RotatingBloomFilter.hash(ByteBuffer.allocate(Integer.BYTES * 2 + app.length + uri.length + ip.length)
+                .putInt(app.length)
+                .put(app)
+                .putInt(uri.length)
+                .put(uri)
+                .put(ip)
+                .array());
+    }
+}
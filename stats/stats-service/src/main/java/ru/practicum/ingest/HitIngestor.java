@@ -0,0 +1,336 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatDto;
+import ru.practicum.exception.IngestOverloadedException;
+import ru.practicum.mapper.IpAddressCodec;
+import ru.practicum.service.StatService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Приём одиночных хитов с групповым коммитом. Потоки контроллера занимают слот кольцевого буфера
+// (CAS по claimed), кладут хит и публикуют номер слота в published. Единственный писатель забирает слоты
+// по порядку номеров и коммитит их пакетами до batchSize строк или maxDelay с первого хита пакета:
+// одна транзакция вместо транзакции на каждый хит.
+// Остановка - рукопожатие с производителями: shutdown закрывает приём (running), дожидается выхода всех
+// производителей из submit и только потом разрешает писателю завершиться (closed), дописав буфер.
+// Поэтому хит, принятый в буфер, не остаётся в нём после остановки писателя.
+// IP проверяется в потоке запроса до буфера: некорректный хит получает свой 400 и не попадает в пакет.
+// Если пакет всё же отклонён из-за данных, хиты пишутся по одному, и отказ получает только виновный
+@Component
+@Slf4j
+public class HitIngestor {
+
+    private static final long FULL_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+    private static final CompletableFuture<Void> ACCEPTED = CompletableFuture.completedFuture(null);
+
+    private final StatService statService;
+    private final IpAddressCodec ipAddressCodec;
+    private final boolean enabled;
+    private final IngestDurability durability;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final long offerTimeoutNanos;
+    private final long ackTimeoutNanos;
+
+    // Слоты выделены заранее; номер хита seq живёт в слоте seq & mask
+    private final int capacity;
+    private final int mask;
+    private final StatDto[] hits;
+    private final CompletableFuture<?>[] acks;
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    // Все слоты с номером меньше consumed писатель уже забрал, их можно занимать снова
+    private final AtomicLong consumed = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean writerParked;
+    private volatile boolean running = true;
+    private volatile boolean closed;
+    private volatile boolean writerFailed;
+    // Производители внутри submit; новых после running = false не появляется
+    private final AtomicInteger producers = new AtomicInteger();
+
+    private final Counter committed;
+    private final Counter failed;
+    private final Counter rejected;
+    private final Timer commitTimer;
+
+    public HitIngestor(StatService statService,
+                       IpAddressCodec ipAddressCodec,
+                       @Value("${stats.ingest.pipeline.enabled:true}") boolean enabled,
+                       @Value("${stats.ingest.pipeline.durability:COMMIT}") IngestDurability durability,
+                       @Value("${stats.ingest.pipeline.capacity:65536}") int capacity,
+                       @Value("${stats.ingest.pipeline.batch-size:1000}") int batchSize,
+                       @Value("${stats.ingest.pipeline.max-delay:PT0.002S}") Duration maxDelay,
+                       @Value("${stats.ingest.pipeline.offer-timeout:PT0.1S}") Duration offerTimeout,
+                       @Value("${stats.ingest.pipeline.ack-timeout:PT5S}") Duration ackTimeout,
+                       MeterRegistry meterRegistry) {
+        this.statService = statService;
+        this.ipAddressCodec = ipAddressCodec;
+        this.enabled = enabled;
+        this.durability = durability;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.ackTimeoutNanos = ackTimeout.toNanos();
+
+        this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.hits = new StatDto[this.capacity];
+        this.acks = new CompletableFuture<?>[this.capacity];
+        this.published = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            published.set(i, -1);
+        }
+
+        meterRegistry.gauge("stats.ingest.pipeline.depth", this,
+                ingestor -> ingestor.claimed.get() - ingestor.consumed.get());
+        this.committed = meterRegistry.counter("stats.ingest.pipeline.committed");
+        this.failed = meterRegistry.counter("stats.ingest.pipeline.failed");
+        this.rejected = meterRegistry.counter("stats.ingest.pipeline.rejected");
+        this.commitTimer = Timer.builder("stats.ingest.pipeline.commit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        this.writer = new Thread(this::writeLoop, "stats-hit-writer");
+        this.writer.setDaemon(true);
+        if (enabled) {
+            this.writer.start();
+        }
+    }
+
+    // После падения писателя хиты идут мимо буфера
+    public boolean isEnabled() {
+        return enabled && !writerFailed;
+    }
+
+    // Возвращается после записи в буфер (ENQUEUE) или после коммита пакета (COMMIT)
+    public void ingest(StatDto hit) {
+        // Бросает IllegalArgumentException для строки, которая не является IP-адресом
+        ipAddressCodec.encode(hit.getIp());
+        CompletableFuture<?> ack = submit(hit);
+        if (durability == IngestDurability.ENQUEUE) {
+            return;
+        }
+
+        try {
+            ack.get(ackTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Хит может ещё закоммититься: клиент повторит, и в худшем случае хит посчитается дважды
+            throw new IngestOverloadedException("Hit was not committed within " + Duration.ofNanos(ackTimeoutNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IngestOverloadedException("Interrupted while waiting for hit commit");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        close();
+        LockSupport.unpark(writer);
+        try {
+            writer.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("shutdown - ingest pipeline stopped, {} hits left in buffer", claimed.get() - consumed.get());
+    }
+
+    // Счётчик producers увеличивается до проверки running, а shutdown сбрасывает running до чтения счётчика:
+    // либо производитель увидит закрытие, либо shutdown дождётся публикации его слота
+    private CompletableFuture<?> submit(StatDto hit) {
+        producers.incrementAndGet();
+        try {
+            long seq = claim();
+            int index = (int) seq & mask;
+            CompletableFuture<?> ack = durability == IngestDurability.COMMIT ? new CompletableFuture<>() : ACCEPTED;
+            hits[index] = hit;
+            acks[index] = ack;
+            // volatile-запись публикует hits[index] и acks[index] писателю
+            published.set(index, seq);
+            if (writerParked) {
+                LockSupport.unpark(writer);
+            }
+            return ack;
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    private void close() {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MS);
+        while (producers.get() > 0 && System.nanoTime() - deadline < 0) {
+            Thread.onSpinWait();
+        }
+        closed = true;
+    }
+
+    private long claim() {
+        long deadline = 0;
+        while (true) {
+            if (!running) {
+                throw new IngestOverloadedException("Ingest pipeline is shutting down");
+            }
+            long seq = claimed.get();
+            if (seq - consumed.get() < capacity) {
+                if (claimed.compareAndSet(seq, seq + 1)) {
+                    return seq;
+                }
+                continue;
+            }
+
+            // Буфер полон: ждём, пока писатель освободит слоты, но не дольше offerTimeout
+            long now = System.nanoTime();
+            if (deadline == 0) {
+                deadline = now + offerTimeoutNanos;
+            } else if (now - deadline > 0) {
+                rejected.increment();
+                throw new IngestOverloadedException("Ingest buffer is full");
+            }
+            LockSupport.parkNanos(FULL_BACKOFF_NANOS);
+        }
+    }
+
+    // Ошибка вне commit останавливает писателя: ожидающие хиты получают отказ, а не ждут ackTimeout,
+    // и следующие хиты пишутся мимо буфера
+    private void writeLoop() {
+        List<StatDto> batch = new ArrayList<>(batchSize);
+        List<CompletableFuture<?>> batchAcks = new ArrayList<>(batchSize);
+        try {
+            write(batch, batchAcks);
+        } catch (Throwable throwable) {
+            log.error("writeLoop - hit writer stopped: {}", throwable.getMessage(), throwable);
+            writerFailed = true;
+            close();
+            IngestOverloadedException rejection = new IngestOverloadedException("Hit writer stopped");
+            batchAcks.forEach(ack -> ack.completeExceptionally(rejection));
+            long end = claimed.get();
+            for (long seq = consumed.get(); seq < end; seq++) {
+                int index = (int) seq & mask;
+                CompletableFuture<?> ack = acks[index];
+                if (published.get(index) == seq && ack != null) {
+                    ack.completeExceptionally(rejection);
+                    failed.increment();
+                }
+                hits[index] = null;
+                acks[index] = null;
+            }
+            failed.increment(batch.size());
+            consumed.set(end);
+        }
+    }
+
+    private void write(List<StatDto> batch, List<CompletableFuture<?>> batchAcks) {
+        long next = 0;
+        while (!closed || next < claimed.get()) {
+            long batchStart = 0;
+            while (batch.size() < batchSize) {
+                int index = (int) next & mask;
+                if (published.get(index) == next) {
+                    batch.add(hits[index]);
+                    batchAcks.add(acks[index]);
+                    hits[index] = null;
+                    acks[index] = null;
+                    next++;
+                    if (batchStart == 0) {
+                        batchStart = System.nanoTime();
+                    }
+                    continue;
+                }
+
+                if (closed && batch.size() > 0) {
+                    break;
+                }
+                long parkNanos;
+                if (batch.isEmpty()) {
+                    if (closed) {
+                        // Слот занят, но ещё не опубликован: производитель вот-вот его допишет
+                        if (next < claimed.get()) {
+                            Thread.onSpinWait();
+                            continue;
+                        }
+                        break;
+                    }
+                    parkNanos = TimeUnit.MILLISECONDS.toNanos(100);
+                } else {
+                    parkNanos = batchStart + maxDelayNanos - System.nanoTime();
+                    if (parkNanos <= 0) {
+                        break;
+                    }
+                }
+                writerParked = true;
+                if (published.get(index) != next && !closed) {
+                    LockSupport.parkNanos(parkNanos);
+                }
+                writerParked = false;
+            }
+
+            // Слоты освобождаются до коммита: производители пишут в буфер, пока идёт транзакция
+            consumed.set(next);
+            if (!batch.isEmpty()) {
+                commit(batch, batchAcks);
+                batch.clear();
+                batchAcks.clear();
+            }
+        }
+    }
+
+    private void commit(List<StatDto> batch, List<CompletableFuture<?>> batchAcks) {
+        long start = System.nanoTime();
+        try {
+            statService.createStats(batch.iterator());
+            committed.increment(batch.size());
+            batchAcks.forEach(ack -> ack.complete(null));
+        } catch (IllegalArgumentException | ConstraintViolationException | DataIntegrityViolationException exception) {
+            log.warn("commit - batch of {} hits was rejected, saving one by one: {}", batch.size(),
+                    exception.getMessage());
+            commitEach(batch, batchAcks);
+        } catch (Exception exception) {
+            failed.increment(batch.size());
+            log.error("commit - batch of {} hits was not saved: {}", batch.size(), exception.getMessage(), exception);
+            batchAcks.forEach(ack -> ack.completeExceptionally(exception));
+        } finally {
+            commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void commitEach(List<StatDto> batch, List<CompletableFuture<?>> batchAcks) {
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                statService.createStats(List.of(batch.get(i)).iterator());
+                committed.increment();
+                batchAcks.get(i).complete(null);
+            } catch (Exception exception) {
+                failed.increment();
+                log.warn("commitEach - hit was not saved: {}: {}", batch.get(i), exception.getMessage());
+                batchAcks.get(i).completeExceptionally(exception);
+            }
+        }
+    }
+}
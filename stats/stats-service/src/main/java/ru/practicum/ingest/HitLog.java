@@ -0,0 +1,324 @@
+package ru.practicum.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.model.Stat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Журнал хитов из отображённых в память сегментов с записями фиксированной длины. Номер записи seq сквозной:
+// сегмент hits-<seq первой записи>.log, запись seq лежит в нём по смещению (seq - base) * RECORD_SIZE.
+// Запись: crc32 (4) | app_id (4) | uri_id (4) | time_stamp, мкс UTC (8) | длина ip (1) | ip (16) | 0 (3).
+// CRC считается по байтам после него; запись с нулевой длиной ip - ещё не записанный хвост сегмента
+@Slf4j
+public class HitLog {
+
+    static final int RECORD_SIZE = 40;
+
+    private static final int CRC_OFFSET = 0;
+    private static final int APP_OFFSET = 4;
+    private static final int URI_OFFSET = 8;
+    private static final int TIME_OFFSET = 12;
+    private static final int IP_LENGTH_OFFSET = 20;
+    private static final int IP_OFFSET = 21;
+    private static final int MAX_IP_LENGTH = 16;
+    private static final String PREFIX = "hits-";
+    private static final String SUFFIX = ".log";
+    private static final String QUARANTINE = "quarantine.log";
+
+    private final Path dir;
+    private final int segmentRecords;
+    private final boolean force;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final CRC32 crc = new CRC32();
+    private final AtomicLong corrupted = new AtomicLong();
+
+    private Segment head;
+    // Записи с номером меньше end записаны; volatile-запись публикует их читателю
+    private volatile long end;
+
+    // Открывает журнал и находит его конец. checkpoint - номер первой непроиндексированной записи:
+    // сегменты целиком до него удаляются, а если журнал короче (каталог потерян), он начинается с checkpoint
+    public HitLog(Path dir, long segmentSize, boolean force, long checkpoint) {
+        this.dir = dir;
+        this.segmentRecords = (int) Math.min(segmentSize / RECORD_SIZE, Integer.MAX_VALUE / RECORD_SIZE);
+        if (segmentRecords <= 0) {
+            throw new IllegalArgumentException("Hit log segment must hold at least one record");
+        }
+        this.force = force;
+
+        try {
+            Files.createDirectories(dir);
+            for (Path path : listSegments()) {
+                Segment segment = map(path, baseOf(path), Files.size(path));
+                Map.Entry<Long, Segment> last = segments.lastEntry();
+                if (last != null && last.getValue().base + last.getValue().capacity != segment.base) {
+                    throw new IllegalStateException("Hit log segment " + path + " does not continue "
+                            + last.getValue().path);
+                }
+                segments.put(segment.base, segment);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Hit log " + dir + " cannot be opened", e);
+        }
+
+        if (segments.isEmpty()) {
+            head = createSegment(checkpoint);
+            end = checkpoint;
+        } else {
+            head = segments.lastEntry().getValue();
+            end = head.base + recover(head);
+            if (end < checkpoint) {
+                log.warn("HitLog - log ends at {} before checkpoint {}, starting a new log", end, checkpoint);
+                new ArrayList<>(segments.values()).forEach(this::delete);
+                head = createSegment(checkpoint);
+                end = checkpoint;
+            } else {
+                deleteBefore(checkpoint);
+            }
+        }
+        log.info("HitLog - opened {}: records [{}, {}) in {} segments", dir, getStart(), end, segments.size());
+    }
+
+    // Номер первой записи, которая ещё хранится в журнале
+    public long getStart() {
+        return segments.firstKey();
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    // После возврата запись в странице отображения и переживает падение процесса; с force - и падение ОС
+    public synchronized long append(int appId, int uriId, byte[] ip, LocalDateTime timestamp) {
+        if (ip.length > MAX_IP_LENGTH) {
+            throw new IllegalArgumentException("IP of " + ip.length + " bytes does not fit hit log record");
+        }
+        long seq = end;
+        if (seq - head.base == head.capacity) {
+            head = createSegment(seq);
+        }
+
+        Arrays.fill(record, (byte) 0);
+        putInt(record, APP_OFFSET, appId);
+        putInt(record, URI_OFFSET, uriId);
+        putLong(record, TIME_OFFSET, toMicros(timestamp));
+        record[IP_LENGTH_OFFSET] = (byte) ip.length;
+        System.arraycopy(ip, 0, record, IP_OFFSET, ip.length);
+        crc.reset();
+        crc.update(record, APP_OFFSET, RECORD_SIZE - APP_OFFSET);
+        putInt(record, CRC_OFFSET, (int) crc.getValue());
+
+        int offset = (int) (seq - head.base) * RECORD_SIZE;
+        head.buffer.put(offset, record);
+        if (force) {
+            head.buffer.force(offset, RECORD_SIZE);
+        }
+        end = seq + 1;
+        return seq;
+    }
+
+    // До max записей начиная с from добавляются в stats; возвращает номер записи после прочитанных.
+    // Повреждённая запись пропускается и копируется в quarantine.log: один испорченный байт не должен
+    // останавливать перенос остального журнала. Читатель один, записи до end не меняются
+    public long read(long from, int max, List<Stat> stats) {
+        long to = Math.min(end, from + max);
+        byte[] buffer = new byte[RECORD_SIZE];
+        CRC32 check = new CRC32();
+        for (long seq = from; seq < to; seq++) {
+            Segment segment = segments.floorEntry(seq).getValue();
+            segment.buffer.get((int) (seq - segment.base) * RECORD_SIZE, buffer);
+            check.reset();
+            check.update(buffer, APP_OFFSET, RECORD_SIZE - APP_OFFSET);
+            int ipLength = buffer[IP_LENGTH_OFFSET] & 0xFF;
+            if ((int) check.getValue() != getInt(buffer, CRC_OFFSET) || ipLength == 0 || ipLength > MAX_IP_LENGTH) {
+                quarantine(seq, segment, buffer);
+                continue;
+            }
+            stats.add(decode(buffer));
+        }
+        return to;
+    }
+
+    public long getCorruptedCount() {
+        return corrupted.get();
+    }
+
+    // Удаляет сегменты, все записи которых проиндексированы до checkpoint; текущий сегмент записи остаётся
+    public synchronized int deleteBefore(long checkpoint) {
+        int deleted = 0;
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == head || segment.base + segment.capacity > checkpoint) {
+                break;
+            }
+            delete(segment);
+            deleted++;
+        }
+        return deleted;
+    }
+
+    // Число записанных записей сегмента: скан до первой пустой записи. Недописанной при падении может быть
+    // только последняя запись: повреждённая запись, за которой есть ещё записи, остаётся на месте и уходит
+    // в карантин при чтении, а хвост начиная с повреждённой последней записи обнуляется
+    private int recover(Segment segment) {
+        byte[] buffer = new byte[RECORD_SIZE];
+        CRC32 check = new CRC32();
+        for (int index = 0; index < segment.capacity; index++) {
+            segment.buffer.get(index * RECORD_SIZE, buffer);
+            if (buffer[IP_LENGTH_OFFSET] == 0) {
+                return index;
+            }
+            check.reset();
+            check.update(buffer, APP_OFFSET, RECORD_SIZE - APP_OFFSET);
+            if ((int) check.getValue() != getInt(buffer, CRC_OFFSET) && !hasRecordAfter(segment, index)) {
+                log.warn("recover - torn record {} in {}, truncating", segment.base + index, segment.path);
+                byte[] zeros = new byte[RECORD_SIZE];
+                for (int tail = index; tail < segment.capacity; tail++) {
+                    segment.buffer.put(tail * RECORD_SIZE, zeros);
+                }
+                segment.buffer.force();
+                return index;
+            }
+        }
+        return segment.capacity;
+    }
+
+    private static boolean hasRecordAfter(Segment segment, int index) {
+        return index + 1 < segment.capacity
+                && segment.buffer.get((index + 1) * RECORD_SIZE + IP_LENGTH_OFFSET) != 0;
+    }
+
+    private Segment createSegment(long base) {
+        Path path = dir.resolve(String.format("%s%020d%s", PREFIX, base, SUFFIX));
+        try {
+            Segment segment = map(path, base, (long) segmentRecords * RECORD_SIZE);
+            segments.put(base, segment);
+            log.debug("createSegment - {}", path);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Hit log segment " + path + " cannot be created", e);
+        }
+    }
+
+    // Запись quarantine.log: seq (8) | исходные байты записи (RECORD_SIZE)
+    private void quarantine(long seq, Segment segment, byte[] buffer) {
+        corrupted.incrementAndGet();
+        log.error("read - hit log record {} in {} is corrupted, moved to {}", seq, segment.path, QUARANTINE);
+        byte[] entry = new byte[Long.BYTES + RECORD_SIZE];
+        putLong(entry, 0, seq);
+        System.arraycopy(buffer, 0, entry, Long.BYTES, RECORD_SIZE);
+        try {
+            Files.write(dir.resolve(QUARANTINE), entry, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.warn("quarantine - record {} was not saved: {}", seq, e.getMessage());
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment.base);
+        try {
+            // Отображение освобождается сборщиком мусора; на Linux файл удаляется сразу
+            Files.deleteIfExists(segment.path);
+            log.debug("delete - {}", segment.path);
+        } catch (IOException e) {
+            log.warn("delete - segment {} was not deleted: {}", segment.path, e.getMessage());
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(PREFIX)
+                            && path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted((a, b) -> Long.compare(baseOf(a), baseOf(b)))
+                    .toList();
+        }
+    }
+
+    private static long baseOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static Segment map(Path path, long base, long size) throws IOException {
+        int capacity = (int) (size / RECORD_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // Отображение за концом файла расширяет его; после закрытия канала отображение остаётся
+            return new Segment(path, base, capacity,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE));
+        }
+    }
+
+    private static Stat decode(byte[] buffer) {
+        int ipLength = buffer[IP_LENGTH_OFFSET];
+        byte[] ip = new byte[ipLength];
+        System.arraycopy(buffer, IP_OFFSET, ip, 0, ipLength);
+        return Stat.builder()
+                .appId(getInt(buffer, APP_OFFSET))
+                .uriId(getInt(buffer, URI_OFFSET))
+                .ip(ip)
+                .timestamp(fromMicros(getLong(buffer, TIME_OFFSET)))
+                .build();
+    }
+
+    private static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        for (int i = 0; i < Integer.BYTES; i++) {
+            buffer[offset + i] = (byte) (value >>> (24 - 8 * i));
+        }
+    }
+
+    private static void putLong(byte[] buffer, int offset, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            buffer[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    private static int getInt(byte[] buffer, int offset) {
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value = value << 8 | buffer[offset + i] & 0xFF;
+        }
+        return value;
+    }
+
+    private static long getLong(byte[] buffer, int offset) {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = value << 8 | buffer[offset + i] & 0xFF;
+        }
+        return value;
+    }
+
+    private record Segment(Path path, long base, int capacity, MappedByteBuffer buffer) {
+    }
+}
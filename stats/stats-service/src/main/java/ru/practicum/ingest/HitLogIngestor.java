@@ -0,0 +1,198 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.StatDto;
+import ru.practicum.mapper.IpAddressCodec;
+import ru.practicum.model.DictionaryType;
+import ru.practicum.model.Stat;
+import ru.practicum.repository.HitLogCheckpointRepository;
+import ru.practicum.service.StatDictionaryService;
+import ru.practicum.service.StatService;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Приём одиночных хитов через журнал HitLog: POST /hit отвечает, как только запись легла в журнал,
+// а индексатор в своём потоке переносит записи в stat пакетами. Checkpoint журнала хранится в базе и
+// сдвигается в транзакции вставки, поэтому после перезапуска индексатор продолжает ровно с первой
+// непроиндексированной записи: хиты не теряются и не дублируются. Журнал свой у каждого экземпляра сервиса,
+// и checkpoint хранится под его stats.ingest.log.id. Если checkpoint сдвинул кто-то другой (тот же id у двух
+// экземпляров), индексатор останавливается, а /hit переходит на запись без журнала
+@Component
+@Slf4j
+public class HitLogIngestor {
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final StatService statService;
+    private final StatDictionaryService dictionaryService;
+    private final IpAddressCodec ipAddressCodec;
+    private final boolean enabled;
+    private final String logId;
+    private final int batchSize;
+    private final long retryDelayNanos;
+
+    private final HitLog hitLog;
+    // Первая запись, ещё не перенесённая в stat; меняет только индексатор
+    private volatile long checkpoint;
+
+    private final Thread indexer;
+    private volatile boolean indexerParked;
+    private volatile boolean running = true;
+    private volatile boolean stopped;
+
+    private final Counter appended;
+    private final Counter indexed;
+    private final Counter failed;
+
+    public HitLogIngestor(StatService statService,
+                          StatDictionaryService dictionaryService,
+                          IpAddressCodec ipAddressCodec,
+                          HitLogCheckpointRepository checkpointRepository,
+                          @Value("${stats.ingest.log.enabled:false}") boolean enabled,
+                          @Value("${stats.ingest.log.id:default}") String logId,
+                          @Value("${stats.ingest.log.dir:hit-log}") String dir,
+                          @Value("${stats.ingest.log.segment-size:64MB}") DataSize segmentSize,
+                          @Value("${stats.ingest.log.force:false}") boolean force,
+                          @Value("${stats.ingest.log.batch-size:1000}") int batchSize,
+                          @Value("${stats.ingest.log.retry-delay:PT1S}") Duration retryDelay,
+                          MeterRegistry meterRegistry) {
+        this.statService = statService;
+        this.dictionaryService = dictionaryService;
+        this.ipAddressCodec = ipAddressCodec;
+        this.enabled = enabled;
+        this.logId = logId;
+        this.batchSize = batchSize;
+        this.retryDelayNanos = retryDelay.toNanos();
+
+        if (enabled) {
+            this.checkpoint = checkpointRepository.findCheckpoint(logId);
+            this.hitLog = new HitLog(Path.of(dir), segmentSize.toBytes(), force, checkpoint);
+            if (hitLog.getStart() > checkpoint) {
+                log.error("HitLogIngestor - hits [{}, {}) are missing from the log and will not be indexed",
+                        checkpoint, hitLog.getStart());
+            }
+            meterRegistry.gauge("stats.ingest.log.lag", this,
+                    ingestor -> ingestor.hitLog.getEnd() - ingestor.checkpoint);
+            meterRegistry.gauge("stats.ingest.log.segments", this, ingestor -> ingestor.hitLog.getSegmentCount());
+            FunctionCounter.builder("stats.ingest.log.corrupted", hitLog, HitLog::getCorruptedCount)
+                    .register(meterRegistry);
+        } else {
+            this.hitLog = null;
+        }
+        this.appended = meterRegistry.counter("stats.ingest.log.appended");
+        this.indexed = meterRegistry.counter("stats.ingest.log.indexed");
+        this.failed = meterRegistry.counter("stats.ingest.log.failed");
+
+        this.indexer = new Thread(this::indexLoop, "stats-hit-log-indexer");
+        this.indexer.setDaemon(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled && !stopped;
+    }
+
+    // Записи, оставшиеся в журнале с прошлого запуска, переносятся сразу после старта
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            indexer.start();
+        }
+    }
+
+    // Новые имена сервисов и URI вставляются в словари сразу: в записи журнала хранятся только их id
+    public void append(StatDto hit) {
+        if (!running) {
+            throw new IllegalStateException("Hit log is shutting down");
+        }
+        int appId = dictionaryService.getOrCreateId(DictionaryType.APP, hit.getApp());
+        int uriId = dictionaryService.getOrCreateId(DictionaryType.URI, hit.getUri());
+        hitLog.append(appId, uriId, ipAddressCodec.encode(hit.getIp()), hit.getTimestamp());
+        appended.increment();
+        if (indexerParked) {
+            LockSupport.unpark(indexer);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(indexer);
+        try {
+            indexer.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("shutdown - hit log indexer stopped, {} hits left to index on restart",
+                hitLog.getEnd() - checkpoint);
+    }
+
+    // Любая ошибка переноса - повтор той же пачки через retryDelay: поток индексатора не должен умирать,
+    // иначе журнал растёт без удаления сегментов
+    private void indexLoop() {
+        long next = Math.max(checkpoint, hitLog.getStart());
+        List<Stat> stats = null;
+        long to = next;
+        while (running || next < hitLog.getEnd()) {
+            try {
+                if (stats == null) {
+                    if (next >= hitLog.getEnd()) {
+                        park(TimeUnit.MILLISECONDS.toNanos(100), next);
+                        continue;
+                    }
+                    stats = new ArrayList<>(batchSize);
+                    to = hitLog.read(next, batchSize, stats);
+                }
+                if (!statService.createLoggedStats(logId, stats, checkpoint, to)) {
+                    stopped = true;
+                    log.error("indexLoop - checkpoint of hit log '{}' was moved by another process, indexing stopped "
+                            + "with hits [{}, {}) left; stats.ingest.log.id must be unique per instance",
+                            logId, next, hitLog.getEnd());
+                    return;
+                }
+            } catch (Exception exception) {
+                failed.increment(stats == null ? 0 : stats.size());
+                log.error("indexLoop - hits from {} were not indexed, retrying: {}", next,
+                        exception.getMessage(), exception);
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(retryDelayNanos);
+                continue;
+            }
+            checkpoint = to;
+            next = to;
+            indexed.increment(stats.size());
+            stats = null;
+
+            int deleted = hitLog.deleteBefore(checkpoint);
+            if (deleted > 0) {
+                log.debug("indexLoop - {} indexed segments deleted", deleted);
+            }
+        }
+    }
+
+    private void park(long nanos, long next) {
+        indexerParked = true;
+        if (running && next >= hitLog.getEnd()) {
+            LockSupport.parkNanos(nanos);
+        }
+        indexerParked = false;
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.ingest;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.model.Stat;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class HitsIngestedEvent {
+
+    private final List<Stat> hits;
+}
@@ -0,0 +1,8 @@
+package ru.practicum.ingest;
+
+public enum IngestDurability {
+    // 201 сразу после записи в кольцевой буфер: хиты в буфере теряются при падении процесса
+    ENQUEUE,
+    // 201 только после коммита пакета, в который попал хит
+    COMMIT
+}
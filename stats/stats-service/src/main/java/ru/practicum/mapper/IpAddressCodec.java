@@ -0,0 +1,126 @@
+package ru.practicum.mapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+@Component
+public class IpAddressCodec {
+
+    private static final String HMAC = "HmacSHA256";
+    private static final int HASH_BYTES = Long.BYTES;
+
+    private final IpStorageMode mode;
+    private final ThreadLocal<Mac> mac;
+
+    public IpAddressCodec(@Value("${stats.ip.mode:BINARY}") IpStorageMode mode,
+                          @Value("${stats.ip.salt:}") String salt) {
+        this.mode = mode;
+        if (mode == IpStorageMode.HASHED && salt.isBlank()) {
+            throw new IllegalStateException("stats.ip.salt must be set when stats.ip.mode=HASHED");
+        }
+        SecretKeySpec key = mode == IpStorageMode.HASHED
+                ? new SecretKeySpec(salt.getBytes(StandardCharsets.UTF_8), HMAC)
+                : null;
+        this.mac = ThreadLocal.withInitial(() -> newMac(key));
+    }
+
+    public IpStorageMode getMode() {
+        return mode;
+    }
+
+    public byte[] encode(String ip) {
+        byte[] address = parse(ip);
+        if (mode == IpStorageMode.BINARY) {
+            return address;
+        }
+        return Arrays.copyOf(mac.get().doFinal(address), HASH_BYTES);
+    }
+
+    // Разбирает только литералы адресов: InetAddress.getByName для имени хоста пошёл бы в DNS
+    static byte[] parse(String ip) {
+        if (ip == null) {
+            throw new IllegalArgumentException("IP address must not be null");
+        }
+        String value = ip.trim();
+        return value.indexOf(':') >= 0 ? parseIpv6(value, ip) : parseIpv4(value, ip);
+    }
+
+    private static byte[] parseIpv4(String value, String original) {
+        byte[] address = new byte[4];
+        int octet = 0;
+        int part = 0;
+        int digits = 0;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : '.';
+            if (c == '.') {
+                if (digits == 0 || octet == 4) {
+                    throw invalid(original);
+                }
+                address[octet++] = (byte) part;
+                part = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                part = part * 10 + (c - '0');
+                digits++;
+                if (part > 255) {
+                    throw invalid(original);
+                }
+            } else {
+                throw invalid(original);
+            }
+        }
+        if (octet != 4) {
+            throw invalid(original);
+        }
+        return address;
+    }
+
+    private static byte[] parseIpv6(String value, String original) {
+        int zone = value.indexOf('%');
+        String literal = zone >= 0 ? value.substring(0, zone) : value;
+        if (literal.startsWith("[") && literal.endsWith("]")) {
+            literal = literal.substring(1, literal.length() - 1);
+        }
+        if (literal.isEmpty()) {
+            throw invalid(original);
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (Character.digit(c, 16) < 0 && c != ':' && c != '.') {
+                throw invalid(original);
+            }
+        }
+        try {
+            // Адрес в скобках разбирается только как литерал IPv6.
+            // Для IPv4-mapped адресов (::ffff:a.b.c.d) возвращается Inet4Address, то есть те же 4 байта
+            return InetAddress.getByName("[" + literal + "]").getAddress();
+        } catch (UnknownHostException e) {
+            throw invalid(original);
+        }
+    }
+
+    private static IllegalArgumentException invalid(String ip) {
+        return new IllegalArgumentException("Invalid IP address: " + ip);
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        if (key == null) {
+            return null;
+        }
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
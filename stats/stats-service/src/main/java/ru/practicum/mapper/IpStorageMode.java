@@ -0,0 +1,8 @@
+package ru.practicum.mapper;
+
+public enum IpStorageMode {
+    // 4 байта для IPv4, 16 байт для IPv6
+    BINARY,
+    // 8 байт keyed-хеша адреса: уникальные посетители считаются, а сам адрес не хранится
+    HASHED
+}
@@ -9,26 +9,17 @@ public class StatMapper {
     private StatMapper() {
     }
 
-    public static Stat toStat(StatDto statDto) {
+    public static Stat toStat(StatDto statDto, int appId, int uriId, IpAddressCodec ipAddressCodec) {
         return Stat.builder()
-                .app(statDto.getApp())
-                .uri(statDto.getUri())
-                .ip(statDto.getIp())
+                .appId(appId)
+                .uriId(uriId)
+                .ip(ipAddressCodec.encode(statDto.getIp()))
                 .timestamp(statDto.getTimestamp())
                 .build();
     }
 
-    public static StatDto toStatDto(Stat stat) {
-        return StatDto.builder()
-                .app(stat.getApp())
-                .uri(stat.getUri())
-                .ip(stat.getIp())
-                .timestamp(stat.getTimestamp())
-                .build();
-    }
-
 
     public static StatResponseDto toStatResponseDto(String app, String uri, long hits) {
         return new StatResponseDto(app, uri, hits);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Часть диапазона запроса, которая читается из агрегатов; всё вне [from, to) добирается из сырых строк
+@Data
+@AllArgsConstructor
+public class BucketCoverage {
+
+    private LocalDateTime from;
+
+    private LocalDateTime to;
+
+    private List<BucketRange> ranges;
+}
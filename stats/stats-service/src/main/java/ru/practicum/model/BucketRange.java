@@ -0,0 +1,19 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class BucketRange {
+
+    private BucketUnit unit;
+
+    // Начало первого бакета, включительно
+    private LocalDateTime from;
+
+    // Начало бакета, следующего за последним, не включительно
+    private LocalDateTime to;
+}
@@ -0,0 +1,38 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum BucketUnit {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit chronoUnit;
+
+    BucketUnit(ChronoUnit chronoUnit) {
+        this.chronoUnit = chronoUnit;
+    }
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(chronoUnit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, chronoUnit);
+    }
+
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return bucketStart.plus(1, chronoUnit);
+    }
+
+    // Число целых бакетов между началами двух бакетов
+    public long between(LocalDateTime from, LocalDateTime to) {
+        return chronoUnit.between(from, to);
+    }
+
+    public BucketUnit finer() {
+        return this == MINUTE ? null : values()[ordinal() - 1];
+    }
+}
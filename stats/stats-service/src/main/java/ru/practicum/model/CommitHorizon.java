@@ -0,0 +1,15 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class CommitHorizon {
+
+    // MAX(id) строк stat, видимых в момент замера
+    private long statId;
+
+    // Отметка снимка, в котором замерен statId (см. StatCommitHorizonRepository)
+    private long marker;
+}
@@ -0,0 +1,16 @@
+package ru.practicum.model;
+
+public enum DictionaryType {
+    APP("stat_app"),
+    URI("stat_uri");
+
+    private final String table;
+
+    DictionaryType(String table) {
+        this.table = table;
+    }
+
+    public String getTable() {
+        return table;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RollupWatermark {
+
+    // Все строки stat с id <= lastStatId уже учтены в агрегатах (stat_rollup, stat_bitmap)
+    private long lastStatId;
+
+    // MAX(id), замеченный на одном из прошлых проходов: до него watermark двигается, когда горизонт устоялся
+    private long horizonStatId;
+
+    // Отметка снимка замера horizonStatId; пока транзакции того снимка не завершились, под горизонтом ещё
+    // могут появиться строки, и watermark стоит на месте
+    private long horizonMarker;
+}
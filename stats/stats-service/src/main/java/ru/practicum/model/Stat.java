@@ -18,16 +18,18 @@ public class Stat {
     @Column(name = "id")
     private long statId;
 
-    @Column(name = "app")
-    private String app;
+    // Идентификаторы из словарей stat_app и stat_uri
+    @Column(name = "app_id")
+    private int appId;
 
+    // IpAddressCodec: 4/16 байт адреса или 8 байт хеша
     @Column(name = "ip")
-    private String ip;
+    private byte[] ip;
 
     @Column(name = "time_stamp")
     private LocalDateTime timestamp;
 
-    @Column(name = "uri")
-    private String uri;
+    @Column(name = "uri_id")
+    private int uriId;
 }
 
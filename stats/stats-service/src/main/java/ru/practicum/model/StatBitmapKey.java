@@ -0,0 +1,13 @@
+package ru.practicum.model;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+@Value
+public class StatBitmapKey {
+
+    int uriId;
+
+    LocalDate day;
+}
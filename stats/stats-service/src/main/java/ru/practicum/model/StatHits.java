@@ -0,0 +1,16 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Результат агрегации по идентификаторам словаря; имена подставляются только в итоговом ответе
+@Data
+@AllArgsConstructor
+public class StatHits {
+
+    private int appId;
+
+    private int uriId;
+
+    private long hits;
+}
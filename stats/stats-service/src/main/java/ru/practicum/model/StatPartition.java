@@ -0,0 +1,16 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class StatPartition {
+
+    private String name;
+
+    // Верхняя граница секции, не включительно; null для секции по умолчанию
+    private LocalDateTime upperBound;
+}
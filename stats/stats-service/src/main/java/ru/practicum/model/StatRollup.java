@@ -0,0 +1,21 @@
+package ru.practicum.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class StatRollup {
+
+    private BucketUnit unit;
+
+    private LocalDateTime bucketStart;
+
+    private int appId;
+
+    private int uriId;
+
+    private long hits;
+}
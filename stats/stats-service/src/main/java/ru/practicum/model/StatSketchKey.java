@@ -0,0 +1,15 @@
+package ru.practicum.model;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+@Value
+public class StatSketchKey {
+
+    LocalDateTime bucketStart;
+
+    int appId;
+
+    int uriId;
+}
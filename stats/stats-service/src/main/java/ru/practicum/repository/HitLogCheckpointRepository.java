@@ -0,0 +1,37 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+// Checkpoint хранится отдельно для каждого журнала: журнал свой у каждого экземпляра сервиса
+@Repository
+@RequiredArgsConstructor
+public class HitLogCheckpointRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Строка журнала создаётся при первом запуске с этим logId
+    public long findCheckpoint(String logId) {
+        try {
+            jdbcTemplate.update("""
+                    INSERT INTO stat_log_checkpoint (log_id, next_sequence)
+                    SELECT ?, 0
+                    WHERE NOT EXISTS (SELECT 1 FROM stat_log_checkpoint WHERE log_id = ?)
+                    """, logId, logId);
+        } catch (DuplicateKeyException e) {
+            // Строку одновременно создал другой процесс
+        }
+        Long sequence = jdbcTemplate.queryForObject("SELECT next_sequence FROM stat_log_checkpoint WHERE log_id = ?",
+                Long.class, logId);
+        return sequence == null ? 0 : sequence;
+    }
+
+    // Условие по текущему значению: индексатор, работающий с устаревшим checkpoint, не сдвинет его назад
+    public boolean updateCheckpoint(String logId, long from, long to) {
+        return jdbcTemplate.update(
+                "UPDATE stat_log_checkpoint SET next_sequence = ? WHERE log_id = ? AND next_sequence = ?",
+                to, logId, from) == 1;
+    }
+}
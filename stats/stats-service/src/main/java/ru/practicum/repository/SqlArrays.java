@@ -0,0 +1,21 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.support.SqlArrayValue;
+
+import java.util.Collection;
+
+// Список значений передаётся одним параметром-массивом (col = ANY(:values)), а не раскрывается в IN (?, ?, ...):
+// текст запроса не зависит от длины списка, а число параметров не упирается в лимит драйвера
+final class SqlArrays {
+
+    private SqlArrays() {
+    }
+
+    static SqlArrayValue integers(Collection<Integer> values) {
+        return new SqlArrayValue("integer", values.toArray());
+    }
+
+    static SqlArrayValue strings(Collection<String> values) {
+        return new SqlArrayValue("varchar", values.toArray());
+    }
+}
@@ -0,0 +1,10 @@
+package ru.practicum.repository;
+
+import ru.practicum.model.Stat;
+
+import java.util.List;
+
+public interface StatBatchRepository {
+
+    void insertBatch(List<Stat> stats);
+}
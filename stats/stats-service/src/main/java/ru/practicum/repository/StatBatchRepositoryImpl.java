@@ -0,0 +1,26 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.model.Stat;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class StatBatchRepositoryImpl implements StatBatchRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO stat (app_id, uri_id, ip, time_stamp) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertBatch(List<Stat> stats) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, stats, stats.size(), (ps, stat) -> {
+            ps.setInt(1, stat.getAppId());
+            ps.setInt(2, stat.getUriId());
+            ps.setBytes(3, stat.getIp());
+            ps.setTimestamp(4, Timestamp.valueOf(stat.getTimestamp()));
+        });
+    }
+}
@@ -0,0 +1,192 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.RollupWatermark;
+import ru.practicum.model.StatBitmapKey;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Битмапы уникальных посетителей: stat_ip назначает IP плотные id, stat_bitmap хранит по Roaring bitmap
+// этих id на (uri, сутки). Битмапы строятся проходами по stat за водяным знаком, как и stat_rollup
+@Repository
+@RequiredArgsConstructor
+public class StatBitmapRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public RollupWatermark lockWatermark() {
+        return jdbcTemplate.queryForObject("""
+                        SELECT last_stat_id, horizon_stat_id, horizon_marker
+                        FROM stat_bitmap_watermark
+                        WHERE id = 1
+                        FOR UPDATE
+                        """,
+                (rs, rowNum) -> new RollupWatermark(rs.getLong("last_stat_id"), rs.getLong("horizon_stat_id"),
+                        rs.getLong("horizon_marker")));
+    }
+
+    public long getLastIndexedStatId() {
+        Long id = jdbcTemplate.queryForObject("SELECT last_stat_id FROM stat_bitmap_watermark WHERE id = 1", Long.class);
+        return id == null ? 0 : id;
+    }
+
+    public void updateWatermark(RollupWatermark watermark) {
+        jdbcTemplate.update("""
+                        UPDATE stat_bitmap_watermark SET last_stat_id = ?, horizon_stat_id = ?, horizon_marker = ?
+                        WHERE id = 1
+                        """,
+                watermark.getLastStatId(), watermark.getHorizonStatId(), watermark.getHorizonMarker());
+    }
+
+    public long findIndexBound(long fromExclusive, long toInclusive, int limit) {
+        Long id = jdbcTemplate.queryForObject("""
+                        SELECT MAX(s.id)
+                        FROM (SELECT id FROM stat WHERE id > ? AND id <= ? ORDER BY id LIMIT ?) s
+                        """,
+                Long.class, fromExclusive, toInclusive, limit);
+        return id == null ? fromExclusive : id;
+    }
+
+    // Вызывается под блокировкой водяного знака, поэтому конкурентных вставок нет
+    public int assignIpIds(long fromExclusive, long toInclusive) {
+        return jdbcTemplate.update("""
+                        INSERT INTO stat_ip (ip)
+                        SELECT DISTINCT s.ip
+                        FROM stat s
+                        WHERE s.id > ? AND s.id <= ?
+                        AND NOT EXISTS (SELECT 1 FROM stat_ip i WHERE i.ip = s.ip)
+                        """,
+                fromExclusive, toInclusive);
+    }
+
+    // Посещения порции как (uri_id, visit_day, ip_id); id всех IP порции уже назначены
+    public Map<StatBitmapKey, RoaringBitmap> findVisits(long fromExclusive, long toInclusive) {
+        Map<StatBitmapKey, RoaringBitmap> visits = new HashMap<>();
+        jdbcTemplate.query("""
+                        SELECT DISTINCT s.uri_id, CAST(s.time_stamp AS DATE) AS visit_day, i.id AS ip_id
+                        FROM stat s
+                        JOIN stat_ip i ON i.ip = s.ip
+                        WHERE s.id > ? AND s.id <= ?
+                        """,
+                (RowCallbackHandler) rs -> visits.computeIfAbsent(
+                                new StatBitmapKey(rs.getInt("uri_id"), rs.getDate("visit_day").toLocalDate()),
+                                key -> new RoaringBitmap())
+                        .add(rs.getInt("ip_id")),
+                fromExclusive, toInclusive);
+        return visits;
+    }
+
+    public Map<StatBitmapKey, RoaringBitmap> findBitmaps(LocalDate day, Collection<Integer> uriIds) {
+        Map<StatBitmapKey, RoaringBitmap> bitmaps = new HashMap<>();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("day", Date.valueOf(day))
+                .addValue("uriIds", SqlArrays.integers(uriIds));
+        namedJdbcTemplate.query("SELECT uri_id, bitmap FROM stat_bitmap WHERE visit_day = :day AND uri_id = ANY(:uriIds)",
+                params, rs -> {
+                    bitmaps.put(new StatBitmapKey(rs.getInt("uri_id"), day), fromBytes(rs.getBytes("bitmap")));
+                });
+        return bitmaps;
+    }
+
+    // Битмапы URI за сутки [fromDay, toDay]; handler получает колонки uri_id, visit_day, bitmap и as_of -
+    // водяной знак, прочитанный тем же оператором: битмапы учитывают ровно строки stat с id <= as_of.
+    // Если битмапов нет, отдаётся одна строка с пустыми uri_id и bitmap, чтобы as_of был известен
+    public void streamBitmaps(LocalDate fromDay, LocalDate toDay, List<Integer> uriIds, RowCallbackHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fromDay", Date.valueOf(fromDay))
+                .addValue("toDay", Date.valueOf(toDay))
+                .addValue("uriIds", SqlArrays.integers(uriIds));
+        namedJdbcTemplate.query("""
+                        SELECT b.uri_id, b.visit_day, b.bitmap, w.last_stat_id AS as_of
+                        FROM stat_bitmap_watermark w
+                        LEFT JOIN stat_bitmap b
+                          ON b.visit_day BETWEEN :fromDay AND :toDay AND b.uri_id = ANY(:uriIds)
+                        WHERE w.id = 1
+                        """,
+                params, handler);
+    }
+
+    // IP хитов, не покрытых битмапами: края [start, coveredFrom) и [coveredTo, end], а внутри - строки
+    // с id > asOf. handler получает колонки uri_id, ip и ip_id (NULL, если id IP ещё не назначен)
+    public void streamUnindexedVisitors(LocalDateTime start, LocalDateTime end, LocalDateTime coveredFrom,
+                                        LocalDateTime coveredTo, long asOf, List<Integer> uriIds,
+                                        RowCallbackHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("coveredFrom", Timestamp.valueOf(coveredFrom))
+                .addValue("coveredTo", Timestamp.valueOf(coveredTo))
+                .addValue("asOf", asOf)
+                .addValue("uriIds", SqlArrays.integers(uriIds));
+        // Края читаются по индексу (uri_id, time_stamp), хвост - по первичному ключу
+        namedJdbcTemplate.query("""
+                        SELECT v.uri_id, v.ip, i.id AS ip_id
+                        FROM (SELECT uri_id, ip
+                              FROM stat
+                              WHERE uri_id = ANY(:uriIds)
+                              AND (time_stamp >= :start AND time_stamp < :coveredFrom
+                                   OR time_stamp >= :coveredTo AND time_stamp <= :end)
+                              UNION
+                              SELECT uri_id, ip
+                              FROM stat
+                              WHERE id > :asOf AND uri_id = ANY(:uriIds)
+                              AND time_stamp >= :coveredFrom AND time_stamp < :coveredTo) v
+                        LEFT JOIN stat_ip i ON i.ip = v.ip
+                        """,
+                params, handler);
+    }
+
+    public void insertBitmaps(Map<StatBitmapKey, RoaringBitmap> bitmaps) {
+        List<Map.Entry<StatBitmapKey, RoaringBitmap>> entries = List.copyOf(bitmaps.entrySet());
+        jdbcTemplate.batchUpdate("INSERT INTO stat_bitmap (uri_id, visit_day, bitmap) VALUES (?, ?, ?)",
+                entries, entries.size(), (ps, entry) -> {
+                    ps.setInt(1, entry.getKey().getUriId());
+                    ps.setDate(2, Date.valueOf(entry.getKey().getDay()));
+                    ps.setBytes(3, toBytes(entry.getValue()));
+                });
+    }
+
+    public void updateBitmaps(Map<StatBitmapKey, RoaringBitmap> bitmaps) {
+        List<Map.Entry<StatBitmapKey, RoaringBitmap>> entries = List.copyOf(bitmaps.entrySet());
+        jdbcTemplate.batchUpdate("UPDATE stat_bitmap SET bitmap = ? WHERE uri_id = ? AND visit_day = ?",
+                entries, entries.size(), (ps, entry) -> {
+                    ps.setBytes(1, toBytes(entry.getValue()));
+                    ps.setInt(2, entry.getKey().getUriId());
+                    ps.setDate(3, Date.valueOf(entry.getKey().getDay()));
+                });
+    }
+
+    public static RoaringBitmap fromBytes(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try {
+            bitmap.deserialize(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted visitor bitmap", e);
+        }
+        return bitmap;
+    }
+
+    private static byte[] toBytes(RoaringBitmap bitmap) {
+        bitmap.runOptimize();
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+}
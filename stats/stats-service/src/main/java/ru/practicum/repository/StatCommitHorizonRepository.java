@@ -0,0 +1,73 @@
+package ru.practicum.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.CommitHorizon;
+
+import java.time.Duration;
+
+// Граница id строк stat, ниже которой новых строк уже не появится. MAX(id) сам по себе такой границей не является:
+// транзакция, получившая id раньше, может закоммититься позже, и её строка окажется ниже пройденного водяного
+// знака. Поэтому горизонт запоминается вместе с отметкой снимка и используется только после того, как
+// завершились все транзакции, шедшие в момент замера. На PostgreSQL отметка - xmax снимка, и горизонт готов,
+// когда до неё дошёл xmin текущего снимка. На других базах (H2 в тестах) снимков нет, и горизонт
+// выдерживается settle-delay с момента замера
+@Repository
+public class StatCommitHorizonRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long settleDelayMillis;
+    private volatile Boolean postgres;
+
+    public StatCommitHorizonRepository(JdbcTemplate jdbcTemplate,
+                                       @Value("${stats.watermark.settle-delay:PT10S}") Duration settleDelay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.settleDelayMillis = settleDelay.toMillis();
+    }
+
+    // MAX(id) и xmax читаются одним оператором, то есть из одного снимка
+    public CommitHorizon capture() {
+        if (isPostgres()) {
+            return jdbcTemplate.queryForObject("""
+                            SELECT COALESCE(MAX(id), 0) AS stat_id,
+                                   pg_snapshot_xmax(pg_current_snapshot())::text::bigint AS marker
+                            FROM stat
+                            """,
+                    (rs, rowNum) -> new CommitHorizon(rs.getLong("stat_id"), rs.getLong("marker")));
+        }
+        long marker = System.currentTimeMillis();
+        Long id = jdbcTemplate.queryForObject("SELECT MAX(id) FROM stat", Long.class);
+        return new CommitHorizon(id == null ? 0 : id, marker);
+    }
+
+    // Завершились ли все транзакции, шедшие в момент замера с этой отметкой. Долгая транзакция в любой базе
+    // кластера задерживает горизонт: агрегаты отстают, но запросы остаются точными за счёт сырых строк
+    public boolean isSettled(long marker) {
+        if (isPostgres()) {
+            return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint >= ?", Boolean.class, marker));
+        }
+        return System.currentTimeMillis() - marker >= settleDelayMillis;
+    }
+
+    // Транзакция вставки получает номер до того, как её строки получат id. Иначе строка с id из последовательности,
+    // выданным до замера горизонта, могла бы принадлежать транзакции, которой в снимке замера ещё нет
+    public void acquireTransactionId() {
+        if (isPostgres()) {
+            jdbcTemplate.queryForObject("SELECT pg_current_xact_id()::text", String.class);
+        }
+    }
+
+    private boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            result = "PostgreSQL".equalsIgnoreCase(product);
+            postgres = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,95 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.DictionaryType;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class StatDictionaryRepository {
+
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    // Имена подставляются к уже сгруппированным по id строкам, порядок - как в ответе /stats
+    public static String withNames(String hitsSql) {
+        return "SELECT a.name AS app, u.name AS uri, s.hits FROM (" + hitsSql + ") s"
+                + " JOIN stat_app a ON a.id = s.app_id"
+                + " JOIN stat_uri u ON u.id = s.uri_id"
+                + " ORDER BY s.hits DESC";
+    }
+
+    public Map<String, Integer> findIds(DictionaryType type, Collection<String> names) {
+        Map<String, Integer> ids = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, name FROM " + type.getTable() + " WHERE name = ANY(:names)",
+                new MapSqlParameterSource("names", SqlArrays.strings(names)),
+                rs -> {
+                    ids.put(rs.getString("name"), rs.getInt("id"));
+                });
+        return ids;
+    }
+
+    // Все имена с префиксом; в PostgreSQL LIKE 'prefix%' идёт по индексу text_pattern_ops
+    public Map<String, Integer> findIdsByPrefix(DictionaryType type, String prefix) {
+        Map<String, Integer> ids = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, name FROM " + type.getTable() + " WHERE name LIKE :pattern ESCAPE '\\'",
+                new MapSqlParameterSource("pattern", escapeLike(prefix) + "%"),
+                rs -> {
+                    ids.put(rs.getString("name"), rs.getInt("id"));
+                });
+        return ids;
+    }
+
+    public Map<Integer, String> findNames(DictionaryType type, Collection<Integer> ids) {
+        Map<Integer, String> names = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, name FROM " + type.getTable() + " WHERE id = ANY(:ids)",
+                new MapSqlParameterSource("ids", SqlArrays.integers(ids)),
+                rs -> {
+                    names.put(rs.getInt("id"), rs.getString("name"));
+                });
+        return names;
+    }
+
+    // Вставка под точкой сохранения на соединении текущей транзакции: при конфликте уникального ключа
+    // откатывается только она, а транзакция приёма хитов остаётся рабочей (в PostgreSQL ошибка иначе её прерывает)
+    public boolean insertIfAbsent(DictionaryType type, String name) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO " + type.getTable() + " (name) VALUES (?)")) {
+                ps.setString(1, name);
+                ps.executeUpdate();
+                return true;
+            } catch (SQLException e) {
+                if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                    throw e;
+                }
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                }
+                return false;
+            } finally {
+                if (savepoint != null) {
+                    connection.releaseSavepoint(savepoint);
+                }
+            }
+        }));
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.StatPartition;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class StatPartitionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isPartitioned() {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equalsIgnoreCase(product)) {
+            return false;
+        }
+        List<String> kinds = jdbcTemplate.queryForList("""
+                SELECT c.relkind::text
+                FROM pg_class c
+                WHERE c.oid = to_regclass('stat')
+                """, String.class);
+        return kinds.contains("p");
+    }
+
+    public List<StatPartition> findPartitions() {
+        return jdbcTemplate.query("""
+                        SELECT child.relname AS name,
+                               pg_get_expr(child.relpartbound, child.oid) AS bound
+                        FROM pg_inherits i
+                        JOIN pg_class child ON child.oid = i.inhrelid
+                        WHERE i.inhparent = to_regclass('stat')
+                        """,
+                (rs, rowNum) -> new StatPartition(rs.getString("name"), parseUpperBound(rs.getString("bound"))));
+    }
+
+    // Если в stat_default уже есть строки диапазона, PostgreSQL не даст создать секцию поверх них. Тогда
+    // stat_default отсоединяется, строки переносятся в новую секцию с прежними id и stat_default присоединяется
+    // обратно - всё в одной транзакции. На это время вставки в stat ждут блокировку.
+    // Возвращает число перенесённых строк
+    @Transactional
+    public int createPartition(String name, LocalDateTime from, LocalDateTime to) {
+        if (jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name)) {
+            return 0;
+        }
+        String create = String.format("CREATE TABLE %s PARTITION OF stat FOR VALUES FROM ('%s') TO ('%s')",
+                name, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        Boolean inDefault = jdbcTemplate.queryForObject("""
+                SELECT EXISTS (SELECT 1 FROM stat_default WHERE time_stamp >= ? AND time_stamp < ?)
+                """, Boolean.class, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        if (!inDefault) {
+            jdbcTemplate.execute(create);
+            return 0;
+        }
+
+        jdbcTemplate.execute("ALTER TABLE stat DETACH PARTITION stat_default");
+        jdbcTemplate.execute(create);
+        int moved = jdbcTemplate.update("INSERT INTO " + name + " (id, app_id, uri_id, ip, time_stamp) "
+                        + "SELECT id, app_id, uri_id, ip, time_stamp FROM stat_default "
+                        + "WHERE time_stamp >= ? AND time_stamp < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        jdbcTemplate.update("DELETE FROM stat_default WHERE time_stamp >= ? AND time_stamp < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        jdbcTemplate.execute("ALTER TABLE stat ATTACH PARTITION stat_default DEFAULT");
+        return moved;
+    }
+
+    public Long findMaxStatId(String partition) {
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + partition, Long.class);
+    }
+
+    public void dropPartition(String name) {
+        jdbcTemplate.execute("ALTER TABLE stat DETACH PARTITION " + name);
+        jdbcTemplate.execute("DROP TABLE " + name);
+    }
+
+    public int deleteFromDefaultBefore(LocalDateTime cutoff, long lastRolledStatId) {
+        return jdbcTemplate.update("DELETE FROM stat_default WHERE time_stamp < ? AND id <= ?",
+                Timestamp.valueOf(cutoff), lastRolledStatId);
+    }
+
+    // pg_get_expr возвращает "FOR VALUES FROM ('2024-03-01 00:00:00') TO ('2024-03-02 00:00:00')" или "DEFAULT"
+    private static LocalDateTime parseUpperBound(String bound) {
+        int to = bound.indexOf("TO ('");
+        if (to < 0) {
+            return null;
+        }
+        String value = bound.substring(to + "TO ('".length(), bound.indexOf("')", to));
+        return Timestamp.valueOf(value).toLocalDateTime();
+    }
+}
@@ -0,0 +1,248 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.BucketRange;
+import ru.practicum.model.BucketUnit;
+import ru.practicum.model.RollupWatermark;
+import ru.practicum.model.StatHits;
+import ru.practicum.model.StatRollup;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class StatRollupRepository {
+
+    private static final RowMapper<StatHits> STAT_HITS_MAPPER = (rs, rowNum) ->
+            new StatHits(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public RollupWatermark lockWatermark() {
+        return jdbcTemplate.queryForObject("""
+                        SELECT last_stat_id, horizon_stat_id, horizon_marker
+                        FROM stat_rollup_watermark
+                        WHERE id = 1
+                        FOR UPDATE
+                        """,
+                (rs, rowNum) -> new RollupWatermark(rs.getLong("last_stat_id"), rs.getLong("horizon_stat_id"),
+                        rs.getLong("horizon_marker")));
+    }
+
+    public long getLastRolledStatId() {
+        Long id = jdbcTemplate.queryForObject("SELECT last_stat_id FROM stat_rollup_watermark WHERE id = 1", Long.class);
+        return id == null ? 0 : id;
+    }
+
+    public void updateWatermark(RollupWatermark watermark) {
+        jdbcTemplate.update("""
+                        UPDATE stat_rollup_watermark SET last_stat_id = ?, horizon_stat_id = ?, horizon_marker = ?
+                        WHERE id = 1
+                        """,
+                watermark.getLastStatId(), watermark.getHorizonStatId(), watermark.getHorizonMarker());
+    }
+
+    public long findRollUpBound(long fromExclusive, long toInclusive, int limit) {
+        Long id = jdbcTemplate.queryForObject("""
+                        SELECT MAX(s.id)
+                        FROM (SELECT id FROM stat WHERE id > ? AND id <= ? ORDER BY id LIMIT ?) s
+                        """,
+                Long.class, fromExclusive, toInclusive, limit);
+        return id == null ? fromExclusive : id;
+    }
+
+    public List<StatRollup> aggregateMinutes(long fromExclusive, long toInclusive) {
+        return jdbcTemplate.query("""
+                        SELECT app_id, uri_id, DATE_TRUNC('minute', time_stamp) AS bucket_start, COUNT(*) AS hits
+                        FROM stat
+                        WHERE id > ? AND id <= ?
+                        GROUP BY app_id, uri_id, DATE_TRUNC('minute', time_stamp)
+                        """,
+                (rs, rowNum) -> new StatRollup(BucketUnit.MINUTE,
+                        rs.getTimestamp("bucket_start").toLocalDateTime(),
+                        rs.getInt("app_id"),
+                        rs.getInt("uri_id"),
+                        rs.getLong("hits")),
+                fromExclusive, toInclusive);
+    }
+
+    public void addHits(List<StatRollup> rollups) {
+        int[] updated = jdbcTemplate.batchUpdate("""
+                        UPDATE stat_rollup SET hits = hits + ?
+                        WHERE bucket_unit = ? AND bucket_start = ? AND app_id = ? AND uri_id = ?
+                        """,
+                rollups, rollups.size(), (ps, rollup) -> {
+                    ps.setLong(1, rollup.getHits());
+                    ps.setString(2, rollup.getUnit().name());
+                    ps.setTimestamp(3, Timestamp.valueOf(rollup.getBucketStart()));
+                    ps.setInt(4, rollup.getAppId());
+                    ps.setInt(5, rollup.getUriId());
+                })[0];
+
+        List<StatRollup> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(rollups.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate("""
+                        INSERT INTO stat_rollup (bucket_unit, bucket_start, app_id, uri_id, hits)
+                        VALUES (?, ?, ?, ?, ?)
+                        """,
+                missing, missing.size(), (ps, rollup) -> {
+                    ps.setString(1, rollup.getUnit().name());
+                    ps.setTimestamp(2, Timestamp.valueOf(rollup.getBucketStart()));
+                    ps.setInt(3, rollup.getAppId());
+                    ps.setInt(4, rollup.getUriId());
+                    ps.setLong(5, rollup.getHits());
+                });
+    }
+
+    public List<StatHits> sumHits(List<BucketRange> ranges, List<Integer> uriIds) {
+        if (ranges.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        return namedJdbcTemplate.query(sumHitsSql(ranges, uriIds, params), params, STAT_HITS_MAPPER);
+    }
+
+    // Сырые строки, не покрытые бакетами: края диапазона и всё, что ещё не попало в агрегаты
+    public List<StatHits> countRaw(LocalDateTime start, LocalDateTime end, LocalDateTime coveredFrom,
+                                   LocalDateTime coveredTo, long lastRolledStatId, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        return namedJdbcTemplate.query(countRawSql(start, end, coveredFrom, coveredTo, lastRolledStatId, uriIds, params),
+                params, STAT_HITS_MAPPER);
+    }
+
+    // То же, что sumHits + countRaw, но слияние и сортировка выполняются в базе, а строки читаются курсором
+    public void streamHits(List<BucketRange> ranges, LocalDateTime start, LocalDateTime end,
+                           LocalDateTime coveredFrom, LocalDateTime coveredTo, long lastRolledStatId,
+                           List<Integer> uriIds, RowCallbackHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String hits = countRawSql(start, end, coveredFrom, coveredTo, lastRolledStatId, uriIds, params);
+        if (!ranges.isEmpty()) {
+            hits = sumHitsSql(ranges, uriIds, params) + "\nUNION ALL\n" + hits;
+        }
+        String sql = "SELECT app_id, uri_id, SUM(hits) AS hits FROM (" + hits + ") h GROUP BY app_id, uri_id";
+        namedJdbcTemplate.query(StatDictionaryRepository.withNames(sql), params, handler);
+    }
+
+    // Хиты по бакетам unit начиная с from: агрегаты плюс ещё не свёрнутые сырые строки; handler получает колонки
+    // bucket_start, app_id, uri_id, hits. Один оператор читает один снимок, поэтому проход свёртки,
+    // завершившийся посреди чтения, не задвоит хиты. Без свёртки (rolledUp = false) считаются все сырые строки
+    public void streamBucketHits(BucketUnit unit, LocalDateTime from, boolean rolledUp, RowCallbackHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("unit", unit.name())
+                .addValue("from", Timestamp.valueOf(from));
+        String truncated = "DATE_TRUNC('" + unit.name().toLowerCase() + "', time_stamp)";
+        String raw = "SELECT " + truncated + " AS bucket_start, app_id, uri_id, COUNT(*) AS hits FROM stat "
+                + "WHERE time_stamp >= :from";
+        if (rolledUp) {
+            raw += " AND id > (SELECT last_stat_id FROM stat_rollup_watermark WHERE id = 1)";
+        }
+        raw += " GROUP BY " + truncated + ", app_id, uri_id";
+        if (!rolledUp) {
+            namedJdbcTemplate.query(raw, params, handler);
+            return;
+        }
+        String sql = """
+                SELECT bucket_start, app_id, uri_id, SUM(hits) AS hits
+                FROM (SELECT bucket_start, app_id, uri_id, hits
+                      FROM stat_rollup
+                      WHERE bucket_unit = :unit AND bucket_start >= :from
+                      UNION ALL
+                """ + raw + ") h GROUP BY bucket_start, app_id, uri_id";
+        namedJdbcTemplate.query(sql, params, handler);
+    }
+
+    // Хиты по бакетам unit в [start, end]: целые бакеты [coveredFrom, coveredTo) из агрегатов, края и ещё
+    // не свёрнутые строки - из stat. handler получает колонки bucket_start, app_id, uri_id, hits.
+    // Водяной знак читается тем же оператором, что и агрегаты, поэтому параллельная свёртка не задваивает хиты
+    public void streamBucketCounts(BucketUnit unit, LocalDateTime start, LocalDateTime end,
+                                   LocalDateTime coveredFrom, LocalDateTime coveredTo, List<Integer> uriIds,
+                                   RowCallbackHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("unit", unit.name())
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("coveredFrom", Timestamp.valueOf(coveredFrom))
+                .addValue("coveredTo", Timestamp.valueOf(coveredTo))
+                .addValue("uriIds", SqlArrays.integers(uriIds));
+        String truncated = "DATE_TRUNC('" + unit.name().toLowerCase() + "', time_stamp)";
+        String sql = """
+                SELECT bucket_start, app_id, uri_id, SUM(hits) AS hits
+                FROM (SELECT bucket_start, app_id, uri_id, hits
+                      FROM stat_rollup
+                      WHERE bucket_unit = :unit AND bucket_start >= :coveredFrom AND bucket_start < :coveredTo
+                      AND uri_id = ANY(:uriIds)
+                      UNION ALL
+                      SELECT %1$s AS bucket_start, app_id, uri_id, COUNT(*) AS hits
+                      FROM stat
+                      WHERE time_stamp BETWEEN :start AND :end AND uri_id = ANY(:uriIds)
+                      AND (time_stamp < :coveredFrom OR time_stamp >= :coveredTo
+                           OR id > (SELECT last_stat_id FROM stat_rollup_watermark WHERE id = 1))
+                      GROUP BY %1$s, app_id, uri_id) h
+                GROUP BY bucket_start, app_id, uri_id
+                """.formatted(truncated);
+        namedJdbcTemplate.query(sql, params, handler);
+    }
+
+    private static String sumHitsSql(List<BucketRange> ranges, List<Integer> uriIds, MapSqlParameterSource params) {
+        StringBuilder sql = new StringBuilder("SELECT app_id, uri_id, SUM(hits) AS hits FROM stat_rollup WHERE (");
+        for (int i = 0; i < ranges.size(); i++) {
+            BucketRange range = ranges.get(i);
+            if (i > 0) {
+                sql.append(" OR ");
+            }
+            sql.append("(bucket_unit = :unit").append(i)
+                    .append(" AND bucket_start >= :from").append(i)
+                    .append(" AND bucket_start < :to").append(i).append(')');
+            params.addValue("unit" + i, range.getUnit().name())
+                    .addValue("from" + i, Timestamp.valueOf(range.getFrom()))
+                    .addValue("to" + i, Timestamp.valueOf(range.getTo()));
+        }
+        sql.append(')');
+        if (uriIds != null) {
+            sql.append(" AND uri_id = ANY(:uriIds)");
+            params.addValue("uriIds", SqlArrays.integers(uriIds));
+        }
+        sql.append(" GROUP BY app_id, uri_id");
+        return sql.toString();
+    }
+
+    private static String countRawSql(LocalDateTime start, LocalDateTime end, LocalDateTime coveredFrom,
+                                      LocalDateTime coveredTo, long lastRolledStatId, List<Integer> uriIds,
+                                      MapSqlParameterSource params) {
+        params.addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("coveredFrom", Timestamp.valueOf(coveredFrom))
+                .addValue("coveredTo", Timestamp.valueOf(coveredTo))
+                .addValue("lastRolledStatId", lastRolledStatId);
+
+        String sql = """
+                SELECT app_id, uri_id, COUNT(*) AS hits
+                FROM stat
+                WHERE time_stamp BETWEEN :start AND :end
+                AND (time_stamp < :coveredFrom OR time_stamp >= :coveredTo OR id > :lastRolledStatId)
+                """;
+        if (uriIds != null) {
+            sql += "AND uri_id = ANY(:uriIds)\n";
+            params.addValue("uriIds", SqlArrays.integers(uriIds));
+        }
+        return sql + "GROUP BY app_id, uri_id";
+    }
+}
@@ -2,31 +2,31 @@ package ru.practicum.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-import ru.practicum.StatResponseDto;
 import ru.practicum.model.Stat;
+import ru.practicum.model.StatHits;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
-public interface StatServiceRepository extends JpaRepository<Stat, Long> {
+// Запросы "все URI" и "заданные URI" разделены: условие (:uriIds IS NULL OR e.uriId IN :uriIds)
+// не даёт планировщику использовать индекс по uri_id и делает план зависимым от первого набора параметров.
+// Запросы по заданным URI - в StatStreamRepository, там список id передаётся одним параметром-массивом.
+// Группировка идёт по id словарей, имена подставляет StatDictionaryService
+public interface StatServiceRepository extends JpaRepository<Stat, Long>, StatBatchRepository {
 
     @Query("""
-            SELECT new ru.practicum.StatResponseDto(e.app, e.uri, COUNT(DISTINCT e.ip))
+            SELECT new ru.practicum.model.StatHits(e.appId, e.uriId, COUNT(DISTINCT e.ip))
             FROM Stat e
             WHERE e.timestamp BETWEEN :start AND :end
-            AND (:uris IS NULL OR e.uri IN :uris)
-            GROUP BY e.app, e.uri
-            ORDER BY COUNT(DISTINCT e.ip) DESC
+            GROUP BY e.appId, e.uriId
             """)
-    List<StatResponseDto> getUniqueStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+    List<StatHits> getUniqueStats(LocalDateTime start, LocalDateTime end);
 
     @Query("""
-            SELECT new ru.practicum.StatResponseDto(e.app, e.uri, COUNT(e))
+            SELECT new ru.practicum.model.StatHits(e.appId, e.uriId, COUNT(e))
             FROM Stat e
             WHERE e.timestamp BETWEEN :start AND :end
-            AND (:uris IS NULL OR e.uri IN :uris)
-            GROUP BY e.app, e.uri
-            ORDER BY COUNT(e) DESC
+            GROUP BY e.appId, e.uriId
             """)
-    List<StatResponseDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+    List<StatHits> getStats(LocalDateTime start, LocalDateTime end);
 }
@@ -0,0 +1,137 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.RollupWatermark;
+import ru.practicum.model.StatSketchKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Часовые HyperLogLog-скетчи stat_hll строятся проходами по stat за водяным знаком, как stat_rollup и stat_bitmap
+@Repository
+@RequiredArgsConstructor
+public class StatSketchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public RollupWatermark lockWatermark() {
+        return jdbcTemplate.queryForObject("""
+                        SELECT last_stat_id, horizon_stat_id, horizon_marker
+                        FROM stat_hll_watermark
+                        WHERE id = 1
+                        FOR UPDATE
+                        """,
+                (rs, rowNum) -> new RollupWatermark(rs.getLong("last_stat_id"), rs.getLong("horizon_stat_id"),
+                        rs.getLong("horizon_marker")));
+    }
+
+    public long getLastSketchedStatId() {
+        Long id = jdbcTemplate.queryForObject("SELECT last_stat_id FROM stat_hll_watermark WHERE id = 1", Long.class);
+        return id == null ? 0 : id;
+    }
+
+    public void updateWatermark(RollupWatermark watermark) {
+        jdbcTemplate.update("""
+                        UPDATE stat_hll_watermark SET last_stat_id = ?, horizon_stat_id = ?, horizon_marker = ?
+                        WHERE id = 1
+                        """,
+                watermark.getLastStatId(), watermark.getHorizonStatId(), watermark.getHorizonMarker());
+    }
+
+    public long findSketchBound(long fromExclusive, long toInclusive, int limit) {
+        Long id = jdbcTemplate.queryForObject("""
+                        SELECT MAX(s.id)
+                        FROM (SELECT id FROM stat WHERE id > ? AND id <= ? ORDER BY id LIMIT ?) s
+                        """,
+                Long.class, fromExclusive, toInclusive, limit);
+        return id == null ? fromExclusive : id;
+    }
+
+    // handler получает колонки app_id, uri_id, ip, time_stamp хитов порции
+    public void streamHits(long fromExclusive, long toInclusive, RowCallbackHandler handler) {
+        jdbcTemplate.query("SELECT app_id, uri_id, ip, time_stamp FROM stat WHERE id > ? AND id <= ?",
+                handler, fromExclusive, toInclusive);
+    }
+
+    public byte[] findSketch(StatSketchKey key) {
+        List<byte[]> sketches = jdbcTemplate.query("""
+                        SELECT sketch FROM stat_hll
+                        WHERE bucket_start = ? AND app_id = ? AND uri_id = ?
+                        FOR UPDATE
+                        """,
+                (rs, rowNum) -> rs.getBytes("sketch"),
+                Timestamp.valueOf(key.getBucketStart()), key.getAppId(), key.getUriId());
+        return sketches.isEmpty() ? null : sketches.get(0);
+    }
+
+    public void insertSketch(StatSketchKey key, byte[] sketch) {
+        jdbcTemplate.update("INSERT INTO stat_hll (bucket_start, app_id, uri_id, sketch) VALUES (?, ?, ?, ?)",
+                Timestamp.valueOf(key.getBucketStart()), key.getAppId(), key.getUriId(), sketch);
+    }
+
+    public void updateSketch(StatSketchKey key, byte[] sketch) {
+        jdbcTemplate.update("UPDATE stat_hll SET sketch = ? WHERE bucket_start = ? AND app_id = ? AND uri_id = ?",
+                sketch, Timestamp.valueOf(key.getBucketStart()), key.getAppId(), key.getUriId());
+    }
+
+    // handler получает колонки app_id, uri_id, sketch и as_of - водяной знак, прочитанный тем же оператором:
+    // скетчи учитывают ровно строки stat с id <= as_of. Если скетчей нет, отдаётся одна строка с пустыми
+    // app_id, uri_id и sketch, чтобы as_of был известен
+    public void findSketches(LocalDateTime from, LocalDateTime to, List<Integer> uriIds, RowCallbackHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to));
+
+        String sql = """
+                SELECT h.app_id, h.uri_id, h.sketch, w.last_stat_id AS as_of
+                FROM stat_hll_watermark w
+                LEFT JOIN stat_hll h
+                  ON h.bucket_start >= :from AND h.bucket_start < :to
+                """;
+        if (uriIds != null) {
+            sql += "AND h.uri_id = ANY(:uriIds)\n";
+            params.addValue("uriIds", SqlArrays.integers(uriIds));
+        }
+        namedJdbcTemplate.query(sql + "WHERE w.id = 1", params, handler);
+    }
+
+    // Уникальные посетители из сырых строк, не покрытых часовыми скетчами: края [start, coveredFrom)
+    // и [coveredTo, end], а внутри - строки с id > asOf. handler получает колонки app_id, uri_id, ip
+    public void findUncoveredVisitors(LocalDateTime start, LocalDateTime end, LocalDateTime coveredFrom,
+                                      LocalDateTime coveredTo, long asOf, List<Integer> uriIds,
+                                      RowCallbackHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("coveredFrom", Timestamp.valueOf(coveredFrom))
+                .addValue("coveredTo", Timestamp.valueOf(coveredTo))
+                .addValue("asOf", asOf);
+
+        String uriFilter = "";
+        if (uriIds != null) {
+            uriFilter = "AND uri_id = ANY(:uriIds)";
+            params.addValue("uriIds", SqlArrays.integers(uriIds));
+        }
+        // Края читаются по времени, хвост - по первичному ключу
+        namedJdbcTemplate.query("""
+                        SELECT app_id, uri_id, ip
+                        FROM stat
+                        WHERE (time_stamp >= :start AND time_stamp < :coveredFrom
+                               OR time_stamp >= :coveredTo AND time_stamp <= :end)
+                        %1$s
+                        UNION
+                        SELECT app_id, uri_id, ip
+                        FROM stat
+                        WHERE id > :asOf AND time_stamp >= :coveredFrom AND time_stamp < :coveredTo
+                        %1$s
+                        """.formatted(uriFilter),
+                params, handler);
+    }
+}
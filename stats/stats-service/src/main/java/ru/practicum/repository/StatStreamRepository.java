@@ -0,0 +1,91 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.BucketUnit;
+import ru.practicum.model.StatHits;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Запросы к сырым хитам через JDBC: список URI передаётся одним параметром-массивом, чего JPQL не умеет.
+// streamStats отдаёт handler колонки app, uri, hits; findStatsByUris - сгруппированные по id строки
+@Repository
+@RequiredArgsConstructor
+public class StatStreamRepository {
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique,
+                            RowCallbackHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        namedJdbcTemplate.query(StatDictionaryRepository.withNames(hitsSql(start, end, uriIds, unique, params)),
+                params, handler);
+    }
+
+    public List<StatHits> findStatsByUris(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                          boolean unique) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        return namedJdbcTemplate.query(hitsSql(start, end, uriIds, unique, params), params,
+                (rs, rowNum) -> new StatHits(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("hits")));
+    }
+
+    // Уникальные IP всех uriIds вместе по сервисам: app_id -> hits; uriIds == null - все URI
+    public Map<Integer, Long> findCollapsedUniqueStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+        String sql = "SELECT app_id, COUNT(DISTINCT ip) AS hits\n"
+                + "FROM stat\n"
+                + "WHERE time_stamp BETWEEN :start AND :end\n";
+        if (uriIds != null) {
+            sql += "AND uri_id = ANY(:uriIds)\n";
+            params.addValue("uriIds", SqlArrays.integers(uriIds));
+        }
+        Map<Integer, Long> stats = new HashMap<>();
+        namedJdbcTemplate.query(sql + "GROUP BY app_id",
+                params, rs -> {
+                    stats.put(rs.getInt("app_id"), rs.getLong("hits"));
+                });
+        return stats;
+    }
+
+    // Хиты по бакетам одним сгруппированным проходом по stat; handler получает колонки bucket_start, app_id,
+    // uri_id, hits. Для unique считаются уникальные IP внутри каждого бакета
+    public void streamBucketStats(BucketUnit unit, LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                  boolean unique, RowCallbackHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("uriIds", SqlArrays.integers(uriIds));
+        String truncated = "DATE_TRUNC('" + unit.name().toLowerCase() + "', time_stamp)";
+        String sql = "SELECT " + truncated + " AS bucket_start, app_id, uri_id, "
+                + (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") + " AS hits\n"
+                + "FROM stat\n"
+                + "WHERE time_stamp BETWEEN :start AND :end AND uri_id = ANY(:uriIds)\n"
+                + "GROUP BY " + truncated + ", app_id, uri_id";
+        namedJdbcTemplate.query(sql, params, handler);
+    }
+
+    // Видим в пакете: StatQueryPlanTest проверяет планы именно этих запросов
+    static String hitsSql(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique,
+                          MapSqlParameterSource params) {
+        params.addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+
+        String sql = "SELECT app_id, uri_id, " + (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") + " AS hits\n"
+                + "FROM stat\n"
+                + "WHERE time_stamp BETWEEN :start AND :end\n";
+        if (uriIds != null) {
+            sql += "AND uri_id = ANY(:uriIds)\n";
+            params.addValue("uriIds", SqlArrays.integers(uriIds));
+        }
+        return sql + "GROUP BY app_id, uri_id";
+    }
+}
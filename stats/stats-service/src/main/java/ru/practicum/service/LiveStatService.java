@@ -0,0 +1,123 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.LiveStatDto;
+import ru.practicum.exception.FeatureDisabledException;
+import ru.practicum.ingest.HitsIngestedEvent;
+import ru.practicum.model.DictionaryType;
+import ru.practicum.model.Stat;
+import ru.practicum.sketch.LiveCounter;
+
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Service
+@Slf4j
+public class LiveStatService {
+
+    // Ключ - id URI из словаря stat_uri
+    private final ConcurrentMap<Integer, LiveCounter> counters = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final int maxUris;
+    private final Counter evicted;
+    private final StatDictionaryService dictionaryService;
+
+    public LiveStatService(StatDictionaryService dictionaryService,
+                           @Value("${stats.live.enabled:true}") boolean enabled,
+                           @Value("${stats.live.max-uris:10000}") int maxUris,
+                           MeterRegistry meterRegistry) {
+        this.dictionaryService = dictionaryService;
+        this.enabled = enabled;
+        this.maxUris = maxUris;
+        meterRegistry.gauge("stats.live.uris", counters, Map::size);
+        meterRegistry.gauge("stats.live.memory.bytes", this, LiveStatService::sizeInBytes);
+        this.evicted = meterRegistry.counter("stats.live.evicted");
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHitsIngested(HitsIngestedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Stat hit : event.getHits()) {
+            long hitMillis = hit.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            counters.computeIfAbsent(hit.getUriId(), uriId -> new LiveCounter()).increment(hitMillis, now);
+        }
+    }
+
+    public List<LiveStatDto> getLiveStats(List<String> uris, int limit) {
+        if (!enabled) {
+            throw new FeatureDisabledException("Live counters are disabled: stats.live.enabled=false");
+        }
+        long now = System.currentTimeMillis();
+        if (uris != null && !uris.isEmpty()) {
+            Map<String, Integer> uriIds = dictionaryService.findIds(DictionaryType.URI, uris);
+            return uris.stream()
+                    .distinct()
+                    .map(uri -> {
+                        Integer uriId = uriIds.get(uri);
+                        return toDto(uri, uriId == null ? null : counters.get(uriId), now);
+                    })
+                    .toList();
+        }
+        return counters.entrySet().stream()
+                .map(entry -> toDto(dictionaryService.getName(DictionaryType.URI, entry.getKey()), entry.getValue(), now))
+                .sorted(Comparator.comparingLong(LiveStatDto::getHitsLast5Minutes)
+                        .thenComparingLong(LiveStatDto::getHitsLastHour)
+                        .thenComparingLong(LiveStatDto::getHitsLast24Hours)
+                        .reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    // Память ограничивается вытеснением URI без хитов за сутки и, сверх лимита, самых давно не посещавшихся
+    @Scheduled(fixedDelayString = "${stats.live.sweep-interval:PT10S}")
+    public void evict() {
+        long now = System.currentTimeMillis();
+        int before = counters.size();
+        counters.entrySet().removeIf(entry -> entry.getValue().isExpired(now));
+
+        int excess = counters.size() - maxUris;
+        if (excess > 0) {
+            counters.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().getLastHitMillis()))
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(counters::remove);
+        }
+
+        int removed = before - counters.size();
+        if (removed > 0) {
+            evicted.increment(removed);
+            log.debug("evict - {} live counters removed, {} left", removed, counters.size());
+        }
+    }
+
+    public long sizeInBytes() {
+        long size = 0;
+        for (LiveCounter counter : counters.values()) {
+            // Узел ConcurrentHashMap и Integer ключа
+            size += 32L + 16L + counter.sizeInBytes();
+        }
+        return size;
+    }
+
+    private LiveStatDto toDto(String uri, LiveCounter counter, long now) {
+        if (counter == null) {
+            return new LiveStatDto(uri, 0, 0, 0);
+        }
+        return new LiveStatDto(uri, counter.getLast5Minutes(now), counter.getLastHour(now), counter.getLast24Hours(now));
+    }
+}
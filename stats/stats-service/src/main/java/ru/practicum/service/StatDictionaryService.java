@@ -0,0 +1,170 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.StatResponseDto;
+import ru.practicum.model.DictionaryType;
+import ru.practicum.model.StatHits;
+import ru.practicum.repository.StatDictionaryRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Словари app и uri: сырые хиты, агрегаты и скетчи хранят только целочисленные id.
+// Записи словаря не удаляются и не меняются, поэтому кеш в памяти не требует инвалидации.
+// Число URI не ограничено, поэтому кеш ограничен cache-max-size записями на словарь и направление:
+// вытесняются давно не использованные, при следующем обращении они снова читаются из базы
+@Service
+@Slf4j
+public class StatDictionaryService {
+
+    private final StatDictionaryRepository dictionaryRepository;
+    private final Map<DictionaryType, Map<String, Integer>> idsByName = new EnumMap<>(DictionaryType.class);
+    private final Map<DictionaryType, Map<Integer, String>> namesById = new EnumMap<>(DictionaryType.class);
+
+    public StatDictionaryService(StatDictionaryRepository dictionaryRepository,
+                                 @Value("${stats.dictionary.cache-max-size:100000}") int cacheMaxSize) {
+        this.dictionaryRepository = dictionaryRepository;
+        for (DictionaryType type : DictionaryType.values()) {
+            idsByName.put(type, lruCache(cacheMaxSize));
+            namesById.put(type, lruCache(cacheMaxSize));
+        }
+    }
+
+    public Map<String, Integer> getOrCreateIds(DictionaryType type, Collection<String> names) {
+        Map<String, Integer> ids = findIds(type, names);
+        if (ids.size() == names.stream().distinct().count()) {
+            return ids;
+        }
+
+        // Вставка идёт в транзакции приёма хитов: отдельная транзакция потребовала бы второе соединение
+        // из пула и при его исчерпании блокировала бы приём. Сортировка исключает взаимоблокировки
+        List<String> missing = names.stream().distinct().filter(name -> !ids.containsKey(name)).sorted().toList();
+        for (String name : missing) {
+            if (!dictionaryRepository.insertIfAbsent(type, name)) {
+                log.debug("getOrCreateIds - {} '{}' was inserted concurrently", type, name);
+            }
+        }
+        Map<String, Integer> created = dictionaryRepository.findIds(type, missing);
+        cache(type, created);
+        ids.putAll(created);
+        return ids;
+    }
+
+    public int getOrCreateId(DictionaryType type, String name) {
+        return getOrCreateIds(type, List.of(name)).get(name);
+    }
+
+    // Неизвестные имена пропускаются: хитов с ними в базе нет
+    public Map<String, Integer> findIds(DictionaryType type, Collection<String> names) {
+        Map<String, Integer> cached = idsByName.get(type);
+        Map<String, Integer> ids = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String name : names) {
+            Integer id = cached.get(name);
+            if (id != null) {
+                ids.put(name, id);
+            } else {
+                missing.add(name);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Integer> found = dictionaryRepository.findIds(type, missing);
+            cache(type, found);
+            ids.putAll(found);
+        }
+        return ids;
+    }
+
+    // Словарь не кешируется целиком, поэтому префикс всегда ищется в базе; найденные имена попадают в кеш
+    public Map<String, Integer> findIdsByPrefix(DictionaryType type, String prefix) {
+        Map<String, Integer> found = dictionaryRepository.findIdsByPrefix(type, prefix);
+        cache(type, found);
+        return found;
+    }
+
+    public String getName(DictionaryType type, int id) {
+        return findNames(type, List.of(id)).get(id);
+    }
+
+    public List<StatResponseDto> toResponse(Collection<StatHits> stats) {
+        Map<Integer, String> apps = findNames(DictionaryType.APP, stats.stream().map(StatHits::getAppId).toList());
+        Map<Integer, String> uris = findNames(DictionaryType.URI, stats.stream().map(StatHits::getUriId).toList());
+
+        List<StatResponseDto> result = new ArrayList<>(stats.size());
+        for (StatHits stat : stats) {
+            result.add(new StatResponseDto(apps.get(stat.getAppId()), uris.get(stat.getUriId()), stat.getHits()));
+        }
+        result.sort(Comparator.comparingLong(StatResponseDto::getHits).reversed());
+        return result;
+    }
+
+    private Map<Integer, String> findNames(DictionaryType type, Collection<Integer> ids) {
+        Map<Integer, String> cached = namesById.get(type);
+        Map<Integer, String> names = new HashMap<>();
+        Set<Integer> missing = new LinkedHashSet<>();
+        for (Integer id : ids) {
+            String name = cached.get(id);
+            if (name != null) {
+                names.put(id, name);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<Integer, String> found = dictionaryRepository.findNames(type, missing);
+            Map<String, Integer> foundIds = new HashMap<>();
+            found.forEach((id, name) -> foundIds.put(name, id));
+            cache(type, foundIds);
+            names.putAll(found);
+        }
+        return names;
+    }
+
+    // Внутри транзакции кеш пополняется только после коммита: id из откатившейся вставки не должен в него попасть
+    private void cache(DictionaryType type, Map<String, Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            put(type, ids);
+            return;
+        }
+        Map<String, Integer> committed = Map.copyOf(ids);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(type, committed);
+            }
+        });
+    }
+
+    // LinkedHashMap в порядке доступа меняется и при чтении, поэтому все обращения синхронизированы
+    private static <K, V> Map<K, V> lruCache(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    private void put(DictionaryType type, Map<String, Integer> ids) {
+        ids.forEach((name, id) -> {
+            idsByName.get(type).put(name, id);
+            namesById.get(type).put(id, name);
+        });
+    }
+}
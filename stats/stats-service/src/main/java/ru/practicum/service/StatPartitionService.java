@@ -0,0 +1,121 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.model.PartitionInterval;
+import ru.practicum.model.StatPartition;
+import ru.practicum.repository.StatBitmapRepository;
+import ru.practicum.repository.StatPartitionRepository;
+import ru.practicum.repository.StatRollupRepository;
+import ru.practicum.repository.StatSketchRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.util.List;
+
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "stats.partition.enabled", havingValue = "true", matchIfMissing = true)
+public class StatPartitionService {
+
+    private final StatPartitionRepository partitionRepository;
+    private final StatRollupRepository rollupRepository;
+    private final StatBitmapRepository bitmapRepository;
+    private final boolean bitmapEnabled;
+    private final StatSketchRepository sketchRepository;
+    private final boolean hllEnabled;
+    private final PartitionInterval interval;
+    private final int premake;
+    private final Period retention;
+
+    public StatPartitionService(StatPartitionRepository partitionRepository,
+                                StatRollupRepository rollupRepository,
+                                StatBitmapRepository bitmapRepository,
+                                @Value("${stats.bitmap.enabled:true}") boolean bitmapEnabled,
+                                StatSketchRepository sketchRepository,
+                                @Value("${stats.hll.enabled:true}") boolean hllEnabled,
+                                @Value("${stats.partition.interval:DAY}") PartitionInterval interval,
+                                @Value("${stats.partition.premake:7}") int premake,
+                                @Value("${stats.partition.retention:P0D}") Period retention) {
+        this.partitionRepository = partitionRepository;
+        this.rollupRepository = rollupRepository;
+        this.bitmapRepository = bitmapRepository;
+        this.bitmapEnabled = bitmapEnabled;
+        this.sketchRepository = sketchRepository;
+        this.hllEnabled = hllEnabled;
+        this.interval = interval;
+        this.premake = premake;
+        this.retention = retention;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.partition.check-interval:PT1H}")
+    public void maintain() {
+        try {
+            if (!partitionRepository.isPartitioned()) {
+                log.debug("maintain - stat is not a partitioned table, skipping");
+                return;
+            }
+            createFuturePartitions();
+            if (!retention.isZero()) {
+                dropExpiredPartitions();
+            }
+        } catch (Exception exception) {
+            log.error("maintain - partition maintenance failed: {}", exception.getMessage(), exception);
+        }
+    }
+
+    private void createFuturePartitions() {
+        LocalDate start = interval.floor(LocalDate.now());
+        for (int i = 0; i <= premake; i++) {
+            LocalDate end = interval.next(start);
+            String name = interval.partitionName(start);
+            try {
+                int moved = partitionRepository.createPartition(name, start.atStartOfDay(), end.atStartOfDay());
+                if (moved > 0) {
+                    log.info("createFuturePartitions - {} stats moved from stat_default to {}", moved, name);
+                }
+            } catch (Exception exception) {
+                log.error("createFuturePartitions - partition {} was not created: {}", name,
+                        exception.getMessage(), exception);
+            }
+            start = end;
+        }
+    }
+
+    // Секции отсоединяются и удаляются целиком; строки, ещё не попавшие в агрегаты, битмапы или скетчи, не удаляются
+    private void dropExpiredPartitions() {
+        LocalDateTime cutoff = LocalDate.now().minus(retention).atStartOfDay();
+        long lastProcessedStatId = rollupRepository.getLastRolledStatId();
+        if (bitmapEnabled) {
+            lastProcessedStatId = Math.min(lastProcessedStatId, bitmapRepository.getLastIndexedStatId());
+        }
+        if (hllEnabled) {
+            lastProcessedStatId = Math.min(lastProcessedStatId, sketchRepository.getLastSketchedStatId());
+        }
+
+        List<StatPartition> expired = partitionRepository.findPartitions().stream()
+                .filter(partition -> partition.getUpperBound() != null)
+                .filter(partition -> !partition.getUpperBound().isAfter(cutoff))
+                .toList();
+
+        for (StatPartition partition : expired) {
+            Long maxStatId = partitionRepository.findMaxStatId(partition.getName());
+            if (maxStatId != null && maxStatId > lastProcessedStatId) {
+                log.warn("dropExpiredPartitions - {} still has stats above rollup, bitmap or sketch watermark, keeping it",
+                        partition.getName());
+                continue;
+            }
+            partitionRepository.dropPartition(partition.getName());
+            log.info("dropExpiredPartitions - partition {} dropped", partition.getName());
+        }
+
+        int deleted = partitionRepository.deleteFromDefaultBefore(cutoff, lastProcessedStatId);
+        if (deleted > 0) {
+            log.info("dropExpiredPartitions - {} expired stats deleted from stat_default", deleted);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "stats.rollup.enabled", havingValue = "true", matchIfMissing = true)
+public class StatRollupScheduler {
+
+    private final StatRollupService rollupService;
+
+    @Scheduled(fixedDelayString = "${stats.rollup.interval:PT30S}")
+    public void rollUp() {
+        try {
+            long processed;
+            do {
+                processed = rollupService.rollUp();
+            } while (processed > 0);
+        } catch (Exception exception) {
+            log.error("rollUp - failed: {}", exception.getMessage(), exception);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.BucketCoverage;
+import ru.practicum.model.BucketRange;
+import ru.practicum.model.BucketUnit;
+import ru.practicum.model.CommitHorizon;
+import ru.practicum.model.RollupWatermark;
+import ru.practicum.model.StatHits;
+import ru.practicum.model.StatRollup;
+import ru.practicum.repository.StatCommitHorizonRepository;
+import ru.practicum.repository.StatRollupRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StatRollupService {
+
+    private final StatRollupRepository rollupRepository;
+    private final StatCommitHorizonRepository horizonRepository;
+
+    @Value("${stats.rollup.batch-size:50000}")
+    private int batchSize;
+
+    // Переносит очередную порцию сырых хитов в минутные, часовые и дневные агрегаты.
+    // Опоздавший хит получает новый id и попадает в свой исторический бакет на ближайшем проходе.
+    // Watermark двигается только до устоявшегося горизонта: строки ниже него уже не появятся, поэтому
+    // условие id > last_stat_id в запросах не теряет хиты транзакций, закоммиченных позже соседних
+    @Transactional
+    public long rollUp() {
+        RollupWatermark watermark = rollupRepository.lockWatermark();
+        long from = watermark.getLastStatId();
+        if (!horizonRepository.isSettled(watermark.getHorizonMarker())) {
+            return 0;
+        }
+        long to = rollupRepository.findRollUpBound(from, watermark.getHorizonStatId(), batchSize);
+
+        if (to > from) {
+            List<StatRollup> minutes = rollupRepository.aggregateMinutes(from, to);
+            rollupRepository.addHits(minutes);
+            rollupRepository.addHits(coarsen(minutes, BucketUnit.HOUR));
+            rollupRepository.addHits(coarsen(minutes, BucketUnit.DAY));
+            log.debug("rollUp - stats ({}, {}] aggregated into {} minute buckets", from, to, minutes.size());
+        }
+
+        // Новый горизонт замеряется, только когда текущая порция догнала устоявшийся
+        RollupWatermark next = new RollupWatermark(to, watermark.getHorizonStatId(), watermark.getHorizonMarker());
+        if (to >= watermark.getHorizonStatId()) {
+            CommitHorizon horizon = horizonRepository.capture();
+            next.setHorizonStatId(horizon.getStatId());
+            next.setHorizonMarker(horizon.getMarker());
+        }
+        rollupRepository.updateWatermark(next);
+        return to - from;
+    }
+
+    public List<StatHits> getStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        long lastRolledStatId = rollupRepository.getLastRolledStatId();
+        BucketCoverage coverage = cover(start, end);
+
+        Map<List<Integer>, StatHits> merged = new LinkedHashMap<>();
+        rollupRepository.sumHits(coverage.getRanges(), uriIds).forEach(stat -> merge(merged, stat));
+        rollupRepository.countRaw(start, end, coverage.getFrom(), coverage.getTo(), lastRolledStatId, uriIds)
+                .forEach(stat -> merge(merged, stat));
+
+        return new ArrayList<>(merged.values());
+    }
+
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, RowCallbackHandler handler) {
+        long lastRolledStatId = rollupRepository.getLastRolledStatId();
+        BucketCoverage coverage = cover(start, end);
+        rollupRepository.streamHits(coverage.getRanges(), start, end, coverage.getFrom(), coverage.getTo(),
+                lastRolledStatId, uriIds, handler);
+    }
+
+    // Бакет покрывает [bucketStart, next), а правая граница запроса включительная
+    private BucketCoverage cover(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime coveredFrom = BucketUnit.MINUTE.ceil(start);
+        LocalDateTime coveredTo = BucketUnit.MINUTE.floor(end.plusNanos(1));
+
+        List<BucketRange> ranges = new ArrayList<>();
+        if (!coveredFrom.isBefore(coveredTo)) {
+            return new BucketCoverage(start, start, ranges);
+        }
+        cover(coveredFrom, coveredTo, BucketUnit.DAY, ranges);
+        return new BucketCoverage(coveredFrom, coveredTo, ranges);
+    }
+
+    // Самые крупные бакеты берутся из середины диапазона, более мелкие добирают края
+    private void cover(LocalDateTime from, LocalDateTime to, BucketUnit unit, List<BucketRange> ranges) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (unit == BucketUnit.MINUTE) {
+            ranges.add(new BucketRange(unit, from, to));
+            return;
+        }
+
+        LocalDateTime alignedFrom = unit.ceil(from);
+        LocalDateTime alignedTo = unit.floor(to);
+        if (!alignedFrom.isBefore(alignedTo)) {
+            cover(from, to, unit.finer(), ranges);
+            return;
+        }
+
+        cover(from, alignedFrom, unit.finer(), ranges);
+        ranges.add(new BucketRange(unit, alignedFrom, alignedTo));
+        cover(alignedTo, to, unit.finer(), ranges);
+    }
+
+    private List<StatRollup> coarsen(List<StatRollup> minutes, BucketUnit unit) {
+        Map<List<Object>, StatRollup> buckets = new LinkedHashMap<>();
+        for (StatRollup minute : minutes) {
+            LocalDateTime bucketStart = unit.floor(minute.getBucketStart());
+            StatRollup bucket = buckets.computeIfAbsent(List.of(bucketStart, minute.getAppId(), minute.getUriId()),
+                    key -> new StatRollup(unit, bucketStart, minute.getAppId(), minute.getUriId(), 0));
+            bucket.setHits(bucket.getHits() + minute.getHits());
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    private void merge(Map<List<Integer>, StatHits> merged, StatHits stat) {
+        List<Integer> key = List.of(stat.getAppId(), stat.getUriId());
+        StatHits existing = merged.get(key);
+        if (existing == null) {
+            merged.put(key, stat);
+        } else {
+            existing.setHits(existing.getHits() + stat.getHits());
+        }
+    }
+}
@@ -1,16 +1,33 @@
 package ru.practicum.service;
 
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.StatDto;
 import ru.practicum.StatResponseDto;
 import ru.practicum.StatsRequestDto;
+import ru.practicum.model.Stat;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatService {
     @Transactional
     StatDto createStat(StatDto statDto);
 
-    @Transactional(readOnly = true)
+    @Transactional
+    long createStats(Iterator<StatDto> stats);
+
+    // Хиты журнала [from, to) и сдвиг его checkpoint на to - в одной транзакции. false - checkpoint журнала
+    // уже не равен from (его сдвинул другой процесс), ничего не записано
+    @Transactional
+    boolean createLoggedStats(String logId, List<Stat> stats, long from, long to);
+
+    // Watermark, агрегаты и сырые строки должны читаться из одного снимка данных
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
     List<StatResponseDto> readStat(StatsRequestDto request);
+
+    // Строки отдаются в consumer по мере чтения курсора, без сборки всего ответа в памяти
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    void streamStat(StatsRequestDto request, Consumer<StatResponseDto> consumer);
 }
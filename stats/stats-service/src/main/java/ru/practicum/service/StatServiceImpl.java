@@ -1,18 +1,41 @@
 package ru.practicum.service;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.StatDto;
 import ru.practicum.StatResponseDto;
+import ru.practicum.StatUriPattern;
 import ru.practicum.StatsRequestDto;
+import ru.practicum.Validator;
 import ru.practicum.exception.WrongTimeException;
+import ru.practicum.ingest.HitsIngestedEvent;
+import ru.practicum.mapper.IpAddressCodec;
 import ru.practicum.mapper.StatMapper;
+import ru.practicum.model.DictionaryType;
 import ru.practicum.model.Stat;
+import ru.practicum.model.StatHits;
+import ru.practicum.repository.HitLogCheckpointRepository;
+import ru.practicum.repository.StatCommitHorizonRepository;
 import ru.practicum.repository.StatServiceRepository;
+import ru.practicum.repository.StatStreamRepository;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -20,14 +43,74 @@ import java.util.List;
 public class StatServiceImpl implements StatService {
 
     private final StatServiceRepository statServiceRepository;
+    private final StatStreamRepository streamRepository;
+    private final HitLogCheckpointRepository checkpointRepository;
+    private final StatCommitHorizonRepository horizonRepository;
+    private final StatRollupService rollupService;
+    private final StatSketchService sketchService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IpAddressCodec ipAddressCodec;
+    private final StatDictionaryService dictionaryService;
+    private final jakarta.validation.Validator validator;
+
+    @Value("${stats.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean rollupEnabled;
 
     @Transactional
     @Override
     public StatDto createStat(StatDto statDto) {
         log.info("createStat - invoked with: {}", statDto);
-        Stat stat = statServiceRepository.save(StatMapper.toStat(statDto));
+        horizonRepository.acquireTransactionId();
+        Stat stat = statServiceRepository.save(StatMapper.toStat(statDto,
+                dictionaryService.getOrCreateId(DictionaryType.APP, statDto.getApp()),
+                dictionaryService.getOrCreateId(DictionaryType.URI, statDto.getUri()),
+                ipAddressCodec));
         log.info("createStat - stat saved successfully with id: {}", stat.getStatId());
-        return StatMapper.toStatDto(stat);
+        eventPublisher.publishEvent(new HitsIngestedEvent(List.of(stat)));
+        return statDto;
+    }
+
+    @Transactional
+    @Override
+    public long createStats(Iterator<StatDto> stats) {
+        horizonRepository.acquireTransactionId();
+        List<StatDto> batch = new ArrayList<>(batchSize);
+        long count = 0;
+
+        while (stats.hasNext()) {
+            StatDto statDto = stats.next();
+            validate(statDto);
+            batch.add(statDto);
+
+            if (batch.size() == batchSize) {
+                count += saveBatch(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            count += saveBatch(batch);
+        }
+
+        log.info("createStats - saved {} stats", count);
+        return count;
+    }
+
+    @Transactional
+    @Override
+    public boolean createLoggedStats(String logId, List<Stat> stats, long from, long to) {
+        if (!checkpointRepository.updateCheckpoint(logId, from, to)) {
+            return false;
+        }
+        // Номер транзакции уже выдан обновлением checkpoint
+        if (!stats.isEmpty()) {
+            statServiceRepository.insertBatch(stats);
+            eventPublisher.publishEvent(new HitsIngestedEvent(stats));
+        }
+        return true;
     }
 
     @Override
@@ -37,15 +120,174 @@ public class StatServiceImpl implements StatService {
             throw new WrongTimeException("Start date must be before end date");
         }
 
-        List<String> uris = (request.getUris() == null || request.getUris().isEmpty())
-                ? null
-                : request.getUris();
+        if (isCollapsed(request)) {
+            return readCollapsedStat(request);
+        }
+
+        List<Integer> uriIds = resolveUriIds(request);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return List.of();
+        }
 
-        List<StatResponseDto> result = request.getUnique()
-                ? statServiceRepository.getUniqueStats(request.getStart(), request.getEnd(), uris)
-                : statServiceRepository.getStats(request.getStart(), request.getEnd(), uris);
+        List<StatResponseDto> result = dictionaryService.toResponse(findStats(request, uriIds));
 
         log.info("Размер полученного списка статистики: {}", result.size());
         return result;
     }
+
+    @Override
+    public void streamStat(StatsRequestDto request, Consumer<StatResponseDto> consumer) {
+        if (request.getStart().isAfter(request.getEnd())) {
+            throw new WrongTimeException("Start date must be before end date");
+        }
+        // Свёрнутых строк не больше, чем сервисов на каждый префикс, поэтому они собираются в памяти
+        if (isCollapsed(request)) {
+            readCollapsedStat(request).forEach(consumer);
+            return;
+        }
+
+        List<Integer> uriIds = resolveUriIds(request);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return;
+        }
+
+        RowCallbackHandler handler = rs ->
+                consumer.accept(new StatResponseDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits")));
+        boolean unique = Boolean.TRUE.equals(request.getUnique());
+        if (unique && Boolean.TRUE.equals(request.getApproximate()) && sketchService.isEnabled()) {
+            // Скетчи объединяются в памяти, их число ограничено числом URI, а не числом хитов
+            dictionaryService.toResponse(sketchService.getUniqueStats(request.getStart(), request.getEnd(), uriIds))
+                    .forEach(consumer);
+        } else if (unique) {
+            streamRepository.streamStats(request.getStart(), request.getEnd(), uriIds, true, handler);
+        } else if (rollupEnabled) {
+            rollupService.streamStats(request.getStart(), request.getEnd(), uriIds, handler);
+        } else {
+            streamRepository.streamStats(request.getStart(), request.getEnd(), uriIds, false, handler);
+        }
+    }
+
+    private List<StatHits> findStats(StatsRequestDto request, List<Integer> uriIds) {
+        boolean unique = Boolean.TRUE.equals(request.getUnique());
+        if (unique && Boolean.TRUE.equals(request.getApproximate()) && sketchService.isEnabled()) {
+            return sketchService.getUniqueStats(request.getStart(), request.getEnd(), uriIds);
+        } else if (unique) {
+            // Уникальные IP не суммируются между бакетами, поэтому точный ответ считается только по сырым данным
+            return uriIds == null
+                    ? statServiceRepository.getUniqueStats(request.getStart(), request.getEnd())
+                    : streamRepository.findStatsByUris(request.getStart(), request.getEnd(), uriIds, true);
+        } else if (rollupEnabled) {
+            return rollupService.getStats(request.getStart(), request.getEnd(), uriIds);
+        } else {
+            return uriIds == null
+                    ? statServiceRepository.getStats(request.getStart(), request.getEnd())
+                    : streamRepository.findStatsByUris(request.getStart(), request.getEnd(), uriIds, false);
+        }
+    }
+
+    // Точные URI отдаются построчно, каждый префикс - одной строкой на сервис с uri, равным префиксу.
+    // URI, подходящий под несколько префиксов, учитывается в каждом из них
+    private List<StatResponseDto> readCollapsedStat(StatsRequestDto request) {
+        List<String> exact = new ArrayList<>();
+        Set<String> patterns = new LinkedHashSet<>();
+        for (String uri : request.getUris()) {
+            if (StatUriPattern.isPattern(uri)) {
+                patterns.add(uri);
+            } else {
+                exact.add(uri);
+            }
+        }
+
+        List<StatResponseDto> result = new ArrayList<>();
+        if (!exact.isEmpty()) {
+            List<Integer> uriIds = List.copyOf(dictionaryService.findIds(DictionaryType.URI, exact).values());
+            if (!uriIds.isEmpty()) {
+                result.addAll(dictionaryService.toResponse(findStats(request, uriIds)));
+            }
+        }
+        for (String pattern : patterns) {
+            List<Integer> uriIds = resolvePattern(pattern);
+            if (uriIds != null && uriIds.isEmpty()) {
+                continue;
+            }
+            findCollapsedStats(request, uriIds).forEach((appId, hits) ->
+                    result.add(new StatResponseDto(dictionaryService.getName(DictionaryType.APP, appId), pattern, hits)));
+        }
+        result.sort(Comparator.comparingLong(StatResponseDto::getHits).reversed());
+        log.info("Размер полученного списка статистики: {}", result.size());
+        return result;
+    }
+
+    // app_id -> хиты всех uriIds; уникальные IP считаются по объединению URI, а не суммой по каждому
+    private Map<Integer, Long> findCollapsedStats(StatsRequestDto request, List<Integer> uriIds) {
+        boolean unique = Boolean.TRUE.equals(request.getUnique());
+        if (unique && Boolean.TRUE.equals(request.getApproximate()) && sketchService.isEnabled()) {
+            return sketchService.getCollapsedUniqueStats(request.getStart(), request.getEnd(), uriIds);
+        } else if (unique) {
+            return streamRepository.findCollapsedUniqueStats(request.getStart(), request.getEnd(), uriIds);
+        }
+        Map<Integer, Long> stats = new HashMap<>();
+        findStats(request, uriIds).forEach(hits -> stats.merge(hits.getAppId(), hits.getHits(), Long::sum));
+        return stats;
+    }
+
+    private static boolean isCollapsed(StatsRequestDto request) {
+        return Boolean.TRUE.equals(request.getCollapse()) && request.getUris() != null
+                && request.getUris().stream().anyMatch(StatUriPattern::isPattern);
+    }
+
+    // null - фильтра по URI нет; пустой список - ни один из запрошенных URI ещё не встречался.
+    // Префиксы раскрываются в id всех подходящих URI, "*" снимает фильтр целиком
+    private List<Integer> resolveUriIds(StatsRequestDto request) {
+        if (request.getUris() == null || request.getUris().isEmpty()) {
+            return null;
+        }
+        List<String> exact = new ArrayList<>(request.getUris().size());
+        Set<Integer> uriIds = new HashSet<>();
+        for (String uri : request.getUris()) {
+            if (StatUriPattern.isPattern(uri)) {
+                List<Integer> matched = resolvePattern(uri);
+                if (matched == null) {
+                    return null;
+                }
+                uriIds.addAll(matched);
+            } else {
+                exact.add(uri);
+            }
+        }
+        if (!exact.isEmpty()) {
+            uriIds.addAll(dictionaryService.findIds(DictionaryType.URI, exact).values());
+        }
+        return List.copyOf(uriIds);
+    }
+
+    // null для "*": под пустой префикс подходит любой URI, и фильтр не нужен
+    private List<Integer> resolvePattern(String pattern) {
+        String prefix = StatUriPattern.prefix(pattern);
+        if (prefix.isEmpty()) {
+            return null;
+        }
+        return List.copyOf(dictionaryService.findIdsByPrefix(DictionaryType.URI, prefix).values());
+    }
+
+    private int saveBatch(List<StatDto> batch) {
+        Map<String, Integer> appIds = dictionaryService.getOrCreateIds(DictionaryType.APP,
+                batch.stream().map(StatDto::getApp).toList());
+        Map<String, Integer> uriIds = dictionaryService.getOrCreateIds(DictionaryType.URI,
+                batch.stream().map(StatDto::getUri).toList());
+        List<Stat> stats = batch.stream()
+                .map(statDto -> StatMapper.toStat(statDto, appIds.get(statDto.getApp()),
+                        uriIds.get(statDto.getUri()), ipAddressCodec))
+                .toList();
+        statServiceRepository.insertBatch(stats);
+        eventPublisher.publishEvent(new HitsIngestedEvent(stats));
+        return stats.size();
+    }
+
+    private void validate(StatDto statDto) {
+        Set<ConstraintViolation<StatDto>> violations = validator.validate(statDto, Validator.Create.class);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+    }
 }
\ No newline at end of file
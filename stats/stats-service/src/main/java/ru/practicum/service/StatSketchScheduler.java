@@ -0,0 +1,28 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "stats.hll.enabled", havingValue = "true", matchIfMissing = true)
+public class StatSketchScheduler {
+
+    private final StatSketchService sketchService;
+
+    @Scheduled(fixedDelayString = "${stats.hll.interval:PT10S}")
+    public void index() {
+        try {
+            long processed;
+            do {
+                processed = sketchService.index();
+            } while (processed > 0);
+        } catch (Exception exception) {
+            log.error("index - failed: {}", exception.getMessage(), exception);
+        }
+    }
+}
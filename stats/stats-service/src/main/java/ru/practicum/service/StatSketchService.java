@@ -0,0 +1,138 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.BucketUnit;
+import ru.practicum.model.CommitHorizon;
+import ru.practicum.model.RollupWatermark;
+import ru.practicum.model.StatHits;
+import ru.practicum.model.StatSketchKey;
+import ru.practicum.repository.StatCommitHorizonRepository;
+import ru.practicum.repository.StatSketchRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Приблизительные уникальные посетители для /stats?unique=true&approximate=true: HyperLogLog на (час, app, uri)
+// в stat_hll. Скетчи строятся проходами по stat за водяным знаком, поэтому в них попадают и хиты, записанные
+// до включения скетчей, и хиты, ещё не попавшие в скетч к моменту остановки сервиса. Ответ - слияние скетчей
+// целых часов плюс IP краёв диапазона и ещё не обработанных хитов из stat. Слияние идемпотентно, поэтому проход,
+// завершившийся посреди запроса, не задваивает посетителей
+@Service
+@Slf4j
+public class StatSketchService {
+
+    private final StatSketchRepository sketchRepository;
+    private final StatCommitHorizonRepository horizonRepository;
+    private final int precision;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public StatSketchService(StatSketchRepository sketchRepository,
+                             StatCommitHorizonRepository horizonRepository,
+                             @Value("${stats.hll.precision:12}") int precision,
+                             @Value("${stats.hll.enabled:true}") boolean enabled,
+                             @Value("${stats.hll.batch-size:50000}") int batchSize) {
+        this.sketchRepository = sketchRepository;
+        this.horizonRepository = horizonRepository;
+        this.precision = precision;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        log.info("HyperLogLog precision {}: standard error {}%", precision,
+                String.format("%.2f", HyperLogLog.standardError(precision) * 100));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Добавляет IP очередной порции сырых хитов в скетчи их часов; опоздавший хит попадает в скетч своего часа
+    // на ближайшем проходе. Watermark двигается только до устоявшегося горизонта, как и у stat_rollup
+    @Transactional
+    public long index() {
+        RollupWatermark watermark = sketchRepository.lockWatermark();
+        long from = watermark.getLastStatId();
+        if (!horizonRepository.isSettled(watermark.getHorizonMarker())) {
+            return 0;
+        }
+        long to = sketchRepository.findSketchBound(from, watermark.getHorizonStatId(), batchSize);
+
+        if (to > from) {
+            Map<StatSketchKey, HyperLogLog> sketches = new HashMap<>();
+            sketchRepository.streamHits(from, to, rs -> sketches.computeIfAbsent(new StatSketchKey(
+                                    BucketUnit.HOUR.floor(rs.getTimestamp("time_stamp").toLocalDateTime()),
+                                    rs.getInt("app_id"), rs.getInt("uri_id")),
+                            key -> new HyperLogLog(precision))
+                    .add(rs.getBytes("ip")));
+            sketches.forEach((key, sketch) -> {
+                byte[] stored = sketchRepository.findSketch(key);
+                if (stored == null) {
+                    sketchRepository.insertSketch(key, sketch.toBytes());
+                } else {
+                    HyperLogLog merged = HyperLogLog.fromBytes(stored);
+                    merged.merge(sketch);
+                    sketchRepository.updateSketch(key, merged.toBytes());
+                }
+            });
+            log.debug("index - stats ({}, {}] added to {} sketches", from, to, sketches.size());
+        }
+
+        RollupWatermark next = new RollupWatermark(to, watermark.getHorizonStatId(), watermark.getHorizonMarker());
+        if (to >= watermark.getHorizonStatId()) {
+            CommitHorizon horizon = horizonRepository.capture();
+            next.setHorizonStatId(horizon.getStatId());
+            next.setHorizonMarker(horizon.getMarker());
+        }
+        sketchRepository.updateWatermark(next);
+        return to - from;
+    }
+
+    public List<StatHits> getUniqueStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        return merge(start, end, uriIds, false).entrySet().stream()
+                .map(entry -> new StatHits(entry.getKey().get(0), entry.getKey().get(1), entry.getValue().estimate()))
+                .toList();
+    }
+
+    // Уникальные посетители всех uriIds вместе по сервисам: скетчи разных URI сливаются в один
+    public Map<Integer, Long> getCollapsedUniqueStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        Map<Integer, Long> stats = new HashMap<>();
+        merge(start, end, uriIds, true).forEach((key, sketch) -> stats.put(key.get(0), sketch.estimate()));
+        return stats;
+    }
+
+    // Ключ результата - (app_id, uri_id) или только (app_id) при collapse
+    private Map<List<Integer>, HyperLogLog> merge(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                                  boolean collapse) {
+        // Скетчи покрывают целые часы [coveredFrom, coveredTo), а правая граница запроса включительная
+        LocalDateTime coveredFrom = BucketUnit.HOUR.ceil(start);
+        LocalDateTime coveredTo = BucketUnit.HOUR.floor(end.plusNanos(1));
+        if (!coveredFrom.isBefore(coveredTo)) {
+            coveredFrom = start;
+            coveredTo = start;
+        }
+
+        Map<List<Integer>, HyperLogLog> merged = new HashMap<>();
+        long[] asOf = new long[1];
+        sketchRepository.findSketches(coveredFrom, coveredTo, uriIds, rs -> {
+            asOf[0] = rs.getLong("as_of");
+            byte[] sketch = rs.getBytes("sketch");
+            if (sketch != null) {
+                sketchFor(merged, rs.getInt("app_id"), rs.getInt("uri_id"), collapse)
+                        .merge(HyperLogLog.fromBytes(sketch));
+            }
+        });
+        sketchRepository.findUncoveredVisitors(start, end, coveredFrom, coveredTo, asOf[0], uriIds, rs ->
+                sketchFor(merged, rs.getInt("app_id"), rs.getInt("uri_id"), collapse).add(rs.getBytes("ip")));
+        return merged;
+    }
+
+    private HyperLogLog sketchFor(Map<List<Integer>, HyperLogLog> merged, int appId, int uriId, boolean collapse) {
+        return merged.computeIfAbsent(collapse ? List.of(appId) : List.of(appId, uriId),
+                key -> new HyperLogLog(precision));
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import ru.practicum.StatTimeSeriesDto;
+import ru.practicum.exception.WrongTimeException;
+import ru.practicum.model.BucketUnit;
+import ru.practicum.model.DictionaryType;
+import ru.practicum.repository.StatRollupRepository;
+import ru.practicum.repository.StatStreamRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Ряды хитов по бакетам для /stats/timeseries. Без unique целые бакеты берутся из stat_rollup того же
+// размера, а края диапазона и несвёрнутый хвост - из stat; уникальные IP между бакетами не суммируются,
+// поэтому для unique весь ряд считается одним сгруппированным проходом по stat
+@Service
+@Slf4j
+public class StatTimeSeriesService {
+
+    private final StatRollupRepository rollupRepository;
+    private final StatStreamRepository streamRepository;
+    private final StatDictionaryService dictionaryService;
+    private final boolean rollupEnabled;
+    private final int maxBuckets;
+
+    public StatTimeSeriesService(StatRollupRepository rollupRepository,
+                                 StatStreamRepository streamRepository,
+                                 StatDictionaryService dictionaryService,
+                                 @Value("${stats.rollup.enabled:true}") boolean rollupEnabled,
+                                 @Value("${stats.timeseries.max-buckets:10000}") int maxBuckets) {
+        this.rollupRepository = rollupRepository;
+        this.streamRepository = streamRepository;
+        this.dictionaryService = dictionaryService;
+        this.rollupEnabled = rollupEnabled;
+        this.maxBuckets = maxBuckets;
+    }
+
+    public StatTimeSeriesDto getTimeSeries(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                           BucketUnit unit, boolean unique) {
+        if (start.isAfter(end)) {
+            throw new WrongTimeException("Start date must be before end date");
+        }
+        LocalDateTime first = unit.floor(start);
+        long bucketCount = unit.between(first, unit.floor(end)) + 1;
+        if (bucketCount > maxBuckets) {
+            throw new IllegalArgumentException("Time series of " + bucketCount + " " + unit.name().toLowerCase()
+                    + " buckets exceeds the limit of " + maxBuckets + ", use a larger bucket or a shorter range");
+        }
+
+        List<LocalDateTime> timestamps = new ArrayList<>((int) bucketCount);
+        for (LocalDateTime bucket = first; timestamps.size() < bucketCount; bucket = unit.next(bucket)) {
+            timestamps.add(bucket);
+        }
+        StatTimeSeriesDto result = new StatTimeSeriesDto(unit.name().toLowerCase(), timestamps, new ArrayList<>());
+
+        List<Integer> uriIds = List.copyOf(dictionaryService.findIds(DictionaryType.URI, uris).values());
+        if (uriIds.isEmpty()) {
+            return result;
+        }
+
+        // Ключ - (app_id, uri_id)
+        Map<List<Integer>, long[]> counts = new HashMap<>();
+        RowCallbackHandler handler = rs -> {
+            int index = (int) unit.between(first, rs.getTimestamp("bucket_start").toLocalDateTime());
+            counts.computeIfAbsent(List.of(rs.getInt("app_id"), rs.getInt("uri_id")),
+                    key -> new long[(int) bucketCount])[index] += rs.getLong("hits");
+        };
+        if (unique || !rollupEnabled) {
+            streamRepository.streamBucketStats(unit, start, end, uriIds, unique, handler);
+        } else {
+            LocalDateTime coveredFrom = unit.ceil(start);
+            LocalDateTime coveredTo = unit.floor(end.plusNanos(1));
+            if (!coveredFrom.isBefore(coveredTo)) {
+                coveredFrom = start;
+                coveredTo = start;
+            }
+            rollupRepository.streamBucketCounts(unit, start, end, coveredFrom, coveredTo, uriIds, handler);
+        }
+
+        counts.forEach((key, series) -> result.getSeries().add(new StatTimeSeriesDto.Series(
+                dictionaryService.getName(DictionaryType.APP, key.get(0)),
+                dictionaryService.getName(DictionaryType.URI, key.get(1)),
+                series)));
+        result.getSeries().sort(Comparator.comparing(StatTimeSeriesDto.Series::getUri)
+                .thenComparing(StatTimeSeriesDto.Series::getApp));
+        log.debug("getTimeSeries - {} series of {} {} buckets", counts.size(), bucketCount, unit);
+        return result;
+    }
+}
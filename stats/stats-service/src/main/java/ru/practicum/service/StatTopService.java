@@ -0,0 +1,222 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.StatTopDto;
+import ru.practicum.StatTopItemDto;
+import ru.practicum.exception.FeatureDisabledException;
+import ru.practicum.exception.WrongTimeException;
+import ru.practicum.ingest.HitsIngestedEvent;
+import ru.practicum.model.BucketUnit;
+import ru.practicum.model.DictionaryType;
+import ru.practicum.model.Stat;
+import ru.practicum.model.StatSketchKey;
+import ru.practicum.repository.StatRollupRepository;
+import ru.practicum.sketch.SpaceSaving;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Популярные URI для /stats/top: по скетчу Space-Saving на каждый бакет, обновляемому при приёме хитов.
+// Запрос сливает скетчи бакетов окна (не больше capacity счётчиков в каждом) и не читает хиты.
+// Скетчи живут в памяти retention и при старте восстанавливаются из агрегатов stat_rollup.
+// Хиты приходят в скетчи только того экземпляра, который их принял, поэтому раз в refresh-interval скетчи
+// пересобираются из stat_rollup и ещё не свёрнутых строк stat - туда пишут все экземпляры. Хиты, принятые во
+// время пересборки, копятся отдельно и добавляются в новые скетчи перед заменой. Хит, закоммиченный до снимка
+// запроса, но дошедший до onHitsIngested после начала пересборки, посчитается дважды - до следующей пересборки
+@Service
+@Slf4j
+public class StatTopService {
+
+    private volatile ConcurrentNavigableMap<LocalDateTime, SpaceSaving> buckets = new ConcurrentSkipListMap<>();
+    // Хиты, принятые во время пересборки; null вне её
+    private volatile Map<StatSketchKey, Long> refreshDelta;
+    // Приём хитов - под чтением, замена скетчей - под записью: хит попадает либо в refreshDelta, либо в новые скетчи
+    private final ReadWriteLock refreshLock = new ReentrantReadWriteLock();
+    private final StatRollupRepository rollupRepository;
+    private final StatDictionaryService dictionaryService;
+    private final boolean enabled;
+    private final boolean rollupEnabled;
+    private final int capacity;
+    private final BucketUnit bucketUnit;
+    private final Duration retention;
+
+    public StatTopService(StatRollupRepository rollupRepository,
+                          StatDictionaryService dictionaryService,
+                          @Value("${stats.top.enabled:true}") boolean enabled,
+                          @Value("${stats.rollup.enabled:true}") boolean rollupEnabled,
+                          @Value("${stats.top.capacity:1000}") int capacity,
+                          @Value("${stats.top.bucket-unit:HOUR}") BucketUnit bucketUnit,
+                          @Value("${stats.top.retention:P2D}") Duration retention,
+                          MeterRegistry meterRegistry) {
+        this.rollupRepository = rollupRepository;
+        this.dictionaryService = dictionaryService;
+        this.enabled = enabled;
+        this.rollupEnabled = rollupEnabled;
+        this.capacity = capacity;
+        this.bucketUnit = bucketUnit;
+        this.retention = retention;
+        meterRegistry.gauge("stats.top.buckets", this, service -> service.buckets.size());
+        meterRegistry.gauge("stats.top.memory.bytes", this, StatTopService::sizeInBytes);
+    }
+
+    // Выполняется до старта веб-сервера, поэтому хиты, принятые во время восстановления, не задваиваются
+    @PostConstruct
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        buckets = loadBuckets();
+        log.info("warmUp - {} top URI buckets restored in {} ms", buckets.size(),
+                Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+
+    @Scheduled(initialDelayString = "${stats.top.refresh-interval:PT5M}",
+            fixedDelayString = "${stats.top.refresh-interval:PT5M}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        refreshDelta = new ConcurrentHashMap<>();
+        ConcurrentNavigableMap<LocalDateTime, SpaceSaving> loaded;
+        try {
+            loaded = loadBuckets();
+        } catch (Exception exception) {
+            refreshDelta = null;
+            log.error("refresh - top URI buckets were not rebuilt: {}", exception.getMessage(), exception);
+            return;
+        }
+
+        refreshLock.writeLock().lock();
+        try {
+            refreshDelta.forEach((sketchKey, count) -> bucket(loaded, sketchKey.getBucketStart())
+                    .offer(key(sketchKey.getAppId(), sketchKey.getUriId()), count));
+            buckets = loaded;
+            refreshDelta = null;
+        } finally {
+            refreshLock.writeLock().unlock();
+        }
+        log.debug("refresh - {} top URI buckets rebuilt in {} ms", loaded.size(),
+                Duration.ofNanos(System.nanoTime() - started).toMillis());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHitsIngested(HitsIngestedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        // Пакет сначала сводится по ключам: одно обновление скетча на URI, а не на хит
+        LocalDateTime oldest = retentionStart();
+        Map<StatSketchKey, Long> counts = new HashMap<>();
+        for (Stat hit : event.getHits()) {
+            LocalDateTime bucketStart = bucketUnit.floor(hit.getTimestamp());
+            if (!bucketStart.isBefore(oldest)) {
+                counts.merge(new StatSketchKey(bucketStart, hit.getAppId(), hit.getUriId()), 1L, Long::sum);
+            }
+        }
+        refreshLock.readLock().lock();
+        try {
+            Map<StatSketchKey, Long> delta = refreshDelta;
+            if (delta != null) {
+                counts.forEach((sketchKey, count) -> delta.merge(sketchKey, count, Long::sum));
+            }
+            ConcurrentNavigableMap<LocalDateTime, SpaceSaving> current = buckets;
+            counts.forEach((sketchKey, count) -> bucket(current, sketchKey.getBucketStart())
+                    .offer(key(sketchKey.getAppId(), sketchKey.getUriId()), count));
+        } finally {
+            refreshLock.readLock().unlock();
+        }
+    }
+
+    public StatTopDto getTop(LocalDateTime start, LocalDateTime end, int limit, String prefix) {
+        if (!enabled) {
+            throw new FeatureDisabledException("Top URIs are disabled: stats.top.enabled=false");
+        }
+        if (start.isAfter(end)) {
+            throw new WrongTimeException("Start date must be before end date");
+        }
+        if (limit < 1 || limit > capacity) {
+            throw new IllegalArgumentException("limit must be between 1 and " + capacity + ": " + limit);
+        }
+
+        LocalDateTime from = bucketUnit.floor(start);
+        LocalDateTime oldest = retentionStart();
+        if (from.isBefore(oldest)) {
+            from = oldest;
+        }
+        LocalDateTime to = bucketUnit.next(bucketUnit.floor(end));
+        // Окно целиком старше retention: скетчей для него уже нет
+        if (!to.isAfter(from)) {
+            return new StatTopDto(from, from, 0, 0, List.of());
+        }
+        SpaceSaving merged = new SpaceSaving(capacity);
+        for (SpaceSaving bucket : buckets.subMap(from, true, to, false).values()) {
+            merged = SpaceSaving.merge(merged, bucket);
+        }
+
+        List<StatTopItemDto> items = merged.items().stream()
+                .map(item -> new StatTopItemDto(
+                        dictionaryService.getName(DictionaryType.APP, (int) (item.key() >>> Integer.SIZE)),
+                        dictionaryService.getName(DictionaryType.URI, (int) item.key()),
+                        item.count(),
+                        item.count() - item.error()))
+                .filter(item -> prefix == null || item.getUri().startsWith(prefix))
+                .limit(limit)
+                .toList();
+        return new StatTopDto(from, to, merged.getTotal(), merged.floor(), items);
+    }
+
+    @Scheduled(fixedDelayString = "${stats.top.sweep-interval:PT1M}")
+    public void evict() {
+        Map<LocalDateTime, SpaceSaving> expired = buckets.headMap(retentionStart());
+        if (!expired.isEmpty()) {
+            log.debug("evict - {} top URI buckets removed", expired.size());
+            expired.clear();
+        }
+    }
+
+    public long sizeInBytes() {
+        long size = 0;
+        for (SpaceSaving bucket : buckets.values()) {
+            // Узел ConcurrentSkipListMap и LocalDateTime ключа
+            size += 48L + 72L + bucket.sizeInBytes();
+        }
+        return size;
+    }
+
+    // Один оператор читает и агрегаты, и не свёрнутый хвост stat, поэтому параллельная свёртка не задваивает хиты
+    private ConcurrentNavigableMap<LocalDateTime, SpaceSaving> loadBuckets() {
+        ConcurrentNavigableMap<LocalDateTime, SpaceSaving> loaded = new ConcurrentSkipListMap<>();
+        rollupRepository.streamBucketHits(bucketUnit, retentionStart(), rollupEnabled, rs ->
+                bucket(loaded, rs.getTimestamp("bucket_start").toLocalDateTime())
+                        .offer(key(rs.getInt("app_id"), rs.getInt("uri_id")), rs.getLong("hits")));
+        return loaded;
+    }
+
+    private SpaceSaving bucket(ConcurrentNavigableMap<LocalDateTime, SpaceSaving> target, LocalDateTime bucketStart) {
+        return target.computeIfAbsent(bucketStart, key -> new SpaceSaving(capacity));
+    }
+
+    private LocalDateTime retentionStart() {
+        return bucketUnit.floor(LocalDateTime.now().minus(retention));
+    }
+
+    private static long key(int appId, int uriId) {
+        return (long) appId << Integer.SIZE | uriId & 0xFFFF_FFFFL;
+    }
+}
@@ -0,0 +1,311 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.StatVisitorsDto;
+import ru.practicum.exception.FeatureDisabledException;
+import ru.practicum.exception.WrongTimeException;
+import ru.practicum.model.BucketUnit;
+import ru.practicum.model.CommitHorizon;
+import ru.practicum.model.DictionaryType;
+import ru.practicum.model.RollupWatermark;
+import ru.practicum.model.StatBitmapKey;
+import ru.practicum.repository.StatBitmapRepository;
+import ru.practicum.repository.StatCommitHorizonRepository;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Точные уникальные посетители для /stats/visitors: IP получают плотные id, и на каждый (uri, сутки) хранится
+// Roaring bitmap этих id. Ответ - объединение битмапов целых суток плюс IP краёв диапазона и ещё
+// не проиндексированных хитов из stat. Объединение идемпотентно, поэтому проход индексации, завершившийся
+// посреди запроса, не задваивает посетителей. Битмапы читаются из базы по запросу и кешируются в памяти
+@Service
+@Slf4j
+public class StatVisitorService {
+
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final Map<StatBitmapKey, CachedBitmap> cache = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final StatBitmapRepository bitmapRepository;
+    private final StatCommitHorizonRepository horizonRepository;
+    private final StatDictionaryService dictionaryService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxDays;
+    private final long cacheMaxBytes;
+    private final long cacheTtlNanos;
+
+    public StatVisitorService(StatBitmapRepository bitmapRepository,
+                              StatCommitHorizonRepository horizonRepository,
+                              StatDictionaryService dictionaryService,
+                              @Value("${stats.bitmap.enabled:true}") boolean enabled,
+                              @Value("${stats.bitmap.batch-size:50000}") int batchSize,
+                              @Value("${stats.bitmap.max-days:366}") int maxDays,
+                              @Value("${stats.bitmap.cache-max-size:64MB}") DataSize cacheMaxSize,
+                              @Value("${stats.bitmap.cache-ttl:PT10M}") Duration cacheTtl,
+                              MeterRegistry meterRegistry) {
+        this.bitmapRepository = bitmapRepository;
+        this.horizonRepository = horizonRepository;
+        this.dictionaryService = dictionaryService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDays = maxDays;
+        this.cacheMaxBytes = cacheMaxSize.toBytes();
+        this.cacheTtlNanos = cacheTtl.toNanos();
+        meterRegistry.gauge("stats.bitmap.cache.entries", cache, Map::size);
+        meterRegistry.gauge("stats.bitmap.cache.bytes", cachedBytes);
+    }
+
+    // Добавляет IP очередной порции сырых хитов в битмапы их (uri, сутки); опоздавший хит попадает
+    // в битмап своих суток на ближайшем проходе. Watermark двигается только до устоявшегося горизонта,
+    // как и у stat_rollup: строка транзакции, закоммиченной позже соседних, не окажется ниже asOf
+    @Transactional
+    public long index() {
+        RollupWatermark watermark = bitmapRepository.lockWatermark();
+        long from = watermark.getLastStatId();
+        if (!horizonRepository.isSettled(watermark.getHorizonMarker())) {
+            return 0;
+        }
+        long to = bitmapRepository.findIndexBound(from, watermark.getHorizonStatId(), batchSize);
+
+        Set<StatBitmapKey> touched = new HashSet<>();
+        if (to > from) {
+            int newIps = bitmapRepository.assignIpIds(from, to);
+            Map<StatBitmapKey, RoaringBitmap> visits = bitmapRepository.findVisits(from, to);
+            Map<LocalDate, Set<Integer>> uriIdsByDay = new HashMap<>();
+            visits.keySet().forEach(key -> uriIdsByDay.computeIfAbsent(key.getDay(), day -> new HashSet<>())
+                    .add(key.getUriId()));
+
+            Map<StatBitmapKey, RoaringBitmap> updated = new HashMap<>();
+            uriIdsByDay.forEach((day, uriIds) -> updated.putAll(bitmapRepository.findBitmaps(day, uriIds)));
+            Map<StatBitmapKey, RoaringBitmap> inserted = new HashMap<>();
+            visits.forEach((key, ipIds) -> {
+                RoaringBitmap stored = updated.get(key);
+                if (stored == null) {
+                    inserted.put(key, ipIds);
+                } else {
+                    stored.or(ipIds);
+                }
+            });
+            bitmapRepository.updateBitmaps(updated);
+            bitmapRepository.insertBitmaps(inserted);
+            touched.addAll(visits.keySet());
+            log.debug("index - stats ({}, {}] added to {} visitor bitmaps, {} new IPs", from, to, visits.size(),
+                    newIps);
+        }
+
+        RollupWatermark next = new RollupWatermark(to, watermark.getHorizonStatId(), watermark.getHorizonMarker());
+        if (to >= watermark.getHorizonStatId()) {
+            CommitHorizon horizon = horizonRepository.capture();
+            next.setHorizonStatId(horizon.getStatId());
+            next.setHorizonMarker(horizon.getMarker());
+        }
+        bitmapRepository.updateWatermark(next);
+        if (to > from) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshCache(from, to, touched);
+                }
+            });
+        }
+        return to - from;
+    }
+
+    public StatVisitorsDto getVisitors(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        if (!enabled) {
+            throw new FeatureDisabledException("Visitor bitmaps are disabled: stats.bitmap.enabled=false");
+        }
+        if (start.isAfter(end)) {
+            throw new WrongTimeException("Start date must be before end date");
+        }
+
+        // Битмапы покрывают целые сутки [coveredFrom, coveredTo), а правая граница запроса включительная
+        LocalDateTime coveredFrom = BucketUnit.DAY.ceil(start);
+        LocalDateTime coveredTo = BucketUnit.DAY.floor(end.plusNanos(1));
+        if (!coveredFrom.isBefore(coveredTo)) {
+            coveredFrom = start;
+            coveredTo = start;
+        }
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = coveredFrom.toLocalDate(); day.isBefore(coveredTo.toLocalDate()); day = day.plusDays(1)) {
+            days.add(day);
+        }
+        if (days.size() > maxDays) {
+            throw new IllegalArgumentException("Range of " + days.size() + " days exceeds the limit of " + maxDays
+                    + " days for unique visitors");
+        }
+
+        Set<String> names = new LinkedHashSet<>(uris);
+        Map<String, Integer> uriIds = dictionaryService.findIds(DictionaryType.URI, names);
+        Map<Integer, List<RoaringBitmap>> parts = new HashMap<>();
+        Map<Integer, Set<ByteBuffer>> unresolved = new HashMap<>();
+        if (!uriIds.isEmpty()) {
+            List<Integer> ids = List.copyOf(uriIds.values());
+            long asOf = collectBitmaps(ids, days, parts);
+            Map<Integer, RoaringBitmap> tail = new HashMap<>();
+            bitmapRepository.streamUnindexedVisitors(start, end, coveredFrom, coveredTo, asOf, ids, rs -> {
+                int uriId = rs.getInt("uri_id");
+                int ipId = rs.getInt("ip_id");
+                if (rs.wasNull()) {
+                    // IP ещё без id не входит ни в один битмап и сравнивается по значению
+                    unresolved.computeIfAbsent(uriId, key -> new HashSet<>()).add(ByteBuffer.wrap(rs.getBytes("ip")));
+                } else {
+                    tail.computeIfAbsent(uriId, key -> new RoaringBitmap()).add(ipId);
+                }
+            });
+            tail.forEach((uriId, ipIds) -> parts.computeIfAbsent(uriId, key -> new ArrayList<>()).add(ipIds));
+        }
+
+        List<StatVisitorsDto.Item> items = new ArrayList<>();
+        List<RoaringBitmap> unions = new ArrayList<>();
+        Set<ByteBuffer> allUnresolved = new HashSet<>();
+        for (String name : names) {
+            Integer uriId = uriIds.get(name);
+            if (uriId == null) {
+                items.add(new StatVisitorsDto.Item(name, 0));
+                continue;
+            }
+            RoaringBitmap union = FastAggregation.or(parts.getOrDefault(uriId, List.of()).iterator());
+            Set<ByteBuffer> others = unresolved.getOrDefault(uriId, Set.of());
+            unions.add(union);
+            allUnresolved.addAll(others);
+            items.add(new StatVisitorsDto.Item(name, union.getLongCardinality() + others.size()));
+        }
+        long visitors = FastAggregation.or(unions.iterator()).getLongCardinality() + allUnresolved.size();
+        log.debug("getVisitors - {} visitors of {} URIs over {} days", visitors, names.size(), days.size());
+        return new StatVisitorsDto(start, end, visitors, items);
+    }
+
+    // Битмапы суток из кеша, недостающие - одним запросом в базу. Возвращает водяной знак, начиная с которого
+    // хиты ещё не учтены хотя бы в одном из использованных битмапов
+    private long collectBitmaps(List<Integer> uriIds, List<LocalDate> days, Map<Integer, List<RoaringBitmap>> parts) {
+        long now = System.nanoTime();
+        long asOf = Long.MAX_VALUE;
+        List<StatBitmapKey> missing = new ArrayList<>();
+        for (int uriId : uriIds) {
+            for (LocalDate day : days) {
+                StatBitmapKey key = new StatBitmapKey(uriId, day);
+                CachedBitmap cached = cache.get(key);
+                if (cached != null && now - cached.loadedNanos > cacheTtlNanos) {
+                    remove(key);
+                    cached = null;
+                }
+                if (cached == null) {
+                    missing.add(key);
+                    continue;
+                }
+                cached.lastAccessNanos = now;
+                asOf = Math.min(asOf, cached.asOf);
+                parts.computeIfAbsent(uriId, id -> new ArrayList<>()).add(cached.bitmap);
+            }
+        }
+        if (missing.isEmpty()) {
+            return asOf;
+        }
+
+        Map<StatBitmapKey, RoaringBitmap> loaded = new HashMap<>();
+        long[] loadedAsOf = new long[1];
+        List<Integer> missingUriIds = missing.stream().map(StatBitmapKey::getUriId).distinct().toList();
+        bitmapRepository.streamBitmaps(days.get(0), days.get(days.size() - 1), missingUriIds, rs -> {
+            loadedAsOf[0] = rs.getLong("as_of");
+            byte[] bytes = rs.getBytes("bitmap");
+            if (bytes != null) {
+                loaded.put(new StatBitmapKey(rs.getInt("uri_id"), rs.getDate("visit_day").toLocalDate()),
+                        StatBitmapRepository.fromBytes(bytes));
+            }
+        });
+        for (StatBitmapKey key : missing) {
+            RoaringBitmap bitmap = loaded.getOrDefault(key, EMPTY);
+            put(key, new CachedBitmap(bitmap, loadedAsOf[0], now));
+            parts.computeIfAbsent(key.getUriId(), id -> new ArrayList<>()).add(bitmap);
+        }
+        evictIfFull();
+        return Math.min(asOf, loadedAsOf[0]);
+    }
+
+    // Битмапы, затронутые проходом (from, to], удаляются из кеша; остальные, учитывавшие все хиты до from,
+    // после прохода верны и до to
+    private void refreshCache(long from, long to, Set<StatBitmapKey> touched) {
+        touched.forEach(this::remove);
+        cache.forEach((key, cached) -> {
+            if (cached.asOf >= from && !touched.contains(key)) {
+                cached.asOf = Math.max(cached.asOf, to);
+            }
+        });
+    }
+
+    private void put(StatBitmapKey key, CachedBitmap cached) {
+        if (cache.putIfAbsent(key, cached) == null) {
+            cachedBytes.addAndGet(cached.sizeInBytes);
+        }
+    }
+
+    private void remove(StatBitmapKey key) {
+        CachedBitmap removed = cache.remove(key);
+        if (removed != null) {
+            cachedBytes.addAndGet(-removed.sizeInBytes);
+        }
+    }
+
+    // Вытесняются давно не читавшиеся битмапы, пока кеш не займёт 90% лимита
+    private void evictIfFull() {
+        if (cachedBytes.get() <= cacheMaxBytes) {
+            return;
+        }
+        List<Map.Entry<StatBitmapKey, CachedBitmap>> entries = new ArrayList<>(cache.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccessNanos));
+        long target = cacheMaxBytes / 10 * 9;
+        int evicted = 0;
+        for (Map.Entry<StatBitmapKey, CachedBitmap> entry : entries) {
+            if (cachedBytes.get() <= target) {
+                break;
+            }
+            remove(entry.getKey());
+            evicted++;
+        }
+        log.debug("evictIfFull - {} visitor bitmaps evicted", evicted);
+    }
+
+    // Битмап в кеше не изменяется: проход индексации пишет в базу и удаляет запись из кеша
+    private static final class CachedBitmap {
+
+        private final RoaringBitmap bitmap;
+        // Узел ConcurrentHashMap, ключ и сама запись
+        private final long sizeInBytes;
+        private final long loadedNanos;
+        // Битмап учитывает все хиты stat с id <= asOf
+        private volatile long asOf;
+        private volatile long lastAccessNanos;
+
+        private CachedBitmap(RoaringBitmap bitmap, long asOf, long loadedNanos) {
+            this.bitmap = bitmap;
+            this.sizeInBytes = 32L + 40L + 48L + bitmap.getLongSizeInBytes();
+            this.asOf = asOf;
+            this.loadedNanos = loadedNanos;
+            this.lastAccessNanos = loadedNanos;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package ru.practicum.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Оценка числа уникальных значений в ограниченной памяти: не больше 2^precision однобайтовых регистров.
+// Стандартная ошибка 1.04 / sqrt(2^precision): 1.6% при precision = 12, 0.8% при precision = 14.
+// Объединение двух скетчей — поэлементный максимум регистров, поэтому повторное слияние ничего не искажает.
+// Пока ненулевых регистров мало, скетч хранит в памяти только их: отсортированный массив (индекс << 8 | значение)
+// по 4 байта на регистр. Когда он дорастает до четверти плотного размера, скетч переходит на плотный массив.
+// Поэтому скетч URI с единицами посетителей занимает десятки байт, а не 2^precision
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    private static final int INITIAL_SPARSE_CAPACITY = 8;
+
+    private final int precision;
+    // null, пока скетч разреженный
+    private byte[] registers;
+    private int[] sparse;
+    private int sparseSize;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between "
+                    + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.sparse = new int[0];
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public static double standardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    public synchronized void add(byte[] value) {
+        long hash = hash64(value);
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), Long.SIZE - precision) + 1;
+        set(index, rank);
+    }
+
+    public synchronized void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog sketches with different precision: "
+                    + precision + " and " + other.precision);
+        }
+        Object otherState = other.snapshot();
+        if (otherState instanceof int[] entries) {
+            for (int entry : entries) {
+                set(entry >>> 8, entry & 0xFF);
+            }
+            return;
+        }
+        byte[] otherRegisters = (byte[]) otherState;
+        toDense();
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] < otherRegisters[i]) {
+                registers[i] = otherRegisters[i];
+            }
+        }
+    }
+
+    public synchronized long estimate() {
+        int m = 1 << precision;
+        double sum = 0;
+        int zeros = 0;
+        if (registers == null) {
+            zeros = m - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += 1.0 / (1L << (sparse[i] & 0xFF));
+            }
+        } else {
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        }
+
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // Поправка малых диапазонов из исходной статьи HyperLogLog: при сырой оценке до 2.5m и пустых регистрах
+        // линейный подсчёт точнее
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    // Разреженный формат для бакетов с небольшим числом посетителей: (индекс, значение) вместо всех регистров
+    public synchronized byte[] toBytes() {
+        int m = 1 << precision;
+        int nonZero = sparseSize;
+        if (registers != null) {
+            nonZero = 0;
+            for (byte register : registers) {
+                if (register != 0) {
+                    nonZero++;
+                }
+            }
+        }
+
+        int sparseBytes = 2 + Integer.BYTES + nonZero * (Integer.BYTES + 1);
+        if (sparseBytes >= 2 + m) {
+            ByteBuffer buffer = ByteBuffer.allocate(2 + m)
+                    .put((byte) precision)
+                    .put(DENSE);
+            if (registers == null) {
+                for (int i = 0; i < sparseSize; i++) {
+                    buffer.put(2 + (sparse[i] >>> 8), (byte) sparse[i]);
+                }
+                return buffer.array();
+            }
+            return buffer.put(registers).array();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(sparseBytes)
+                .put((byte) precision)
+                .put(SPARSE)
+                .putInt(nonZero);
+        if (registers == null) {
+            for (int i = 0; i < sparseSize; i++) {
+                buffer.putInt(sparse[i] >>> 8).put((byte) sparse[i]);
+            }
+        } else {
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    buffer.putInt(i).put(registers[i]);
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        HyperLogLog sketch = new HyperLogLog(buffer.get());
+        byte format = buffer.get();
+        if (format == DENSE) {
+            sketch.toDense();
+            buffer.get(sketch.registers);
+        } else {
+            int nonZero = buffer.getInt();
+            for (int i = 0; i < nonZero; i++) {
+                int index = buffer.getInt();
+                sketch.set(index, buffer.get());
+            }
+        }
+        return sketch;
+    }
+
+    private void set(int index, int rank) {
+        if (registers != null) {
+            if (registers[index] < rank) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+
+        int position = search(index);
+        if (position >= 0) {
+            if ((sparse[position] & 0xFF) < rank) {
+                sparse[position] = index << 8 | rank;
+            }
+            return;
+        }
+        if (sparseSize + 1 > (1 << precision) / 4) {
+            toDense();
+            registers[index] = (byte) rank;
+            return;
+        }
+        position = -position - 1;
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, Math.max(INITIAL_SPARSE_CAPACITY, sparse.length * 2));
+        }
+        System.arraycopy(sparse, position, sparse, position + 1, sparseSize - position);
+        sparse[position] = index << 8 | rank;
+        sparseSize++;
+    }
+
+    private int search(int index) {
+        int low = 0;
+        int high = sparseSize - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleIndex = sparse[middle] >>> 8;
+            if (middleIndex < index) {
+                low = middle + 1;
+            } else if (middleIndex > index) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void toDense() {
+        if (registers != null) {
+            return;
+        }
+        registers = new byte[1 << precision];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) sparse[i];
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    // Копия состояния для слияния без одновременной блокировки двух скетчей: int[] или byte[]
+    private synchronized Object snapshot() {
+        return registers == null ? Arrays.copyOf(sparse, sparseSize) : registers.clone();
+    }
+
+    // FNV-1a с финальным перемешиванием из MurmurHash3: старшие биты индекса должны быть равномерными
+    static long hash64(byte[] value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53b2f53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.practicum.sketch;
+
+import java.util.concurrent.TimeUnit;
+
+// Скользящие окна 5 минут, 1 час и 24 часа; точность окна равна размеру его слота: 10 секунд, 1 минута, 15 минут
+public class LiveCounter {
+
+    private final SlotRing last5Minutes = new SlotRing(TimeUnit.SECONDS.toMillis(10), 30);
+    private final SlotRing lastHour = new SlotRing(TimeUnit.MINUTES.toMillis(1), 60);
+    private final SlotRing last24Hours = new SlotRing(TimeUnit.MINUTES.toMillis(15), 96);
+
+    private volatile long lastHitMillis;
+
+    public void increment(long epochMillis, long nowMillis) {
+        last5Minutes.increment(epochMillis, nowMillis);
+        lastHour.increment(epochMillis, nowMillis);
+        last24Hours.increment(epochMillis, nowMillis);
+        if (epochMillis > lastHitMillis) {
+            lastHitMillis = epochMillis;
+        }
+    }
+
+    public long getLast5Minutes(long nowMillis) {
+        return last5Minutes.sum(nowMillis);
+    }
+
+    public long getLastHour(long nowMillis) {
+        return lastHour.sum(nowMillis);
+    }
+
+    public long getLast24Hours(long nowMillis) {
+        return last24Hours.sum(nowMillis);
+    }
+
+    public long getLastHitMillis() {
+        return lastHitMillis;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis - lastHitMillis >= last24Hours.window();
+    }
+
+    public long sizeInBytes() {
+        // Заголовок объекта, поля и три кольца
+        return 32L + last5Minutes.sizeInBytes() + lastHour.sizeInBytes() + last24Hours.sizeInBytes();
+    }
+}
@@ -0,0 +1,115 @@
+package ru.practicum.sketch;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Фильтр Блума со скользящим окном: generations битовых массивов, каждый принимает ключи одного периода
+// времени, а при переходе к новому периоду самый старый массив очищается и становится текущим. Ключ
+// ищется во всех массивах, поэтому он виден не меньше (generations - 1) периодов и не больше generations.
+// Память постоянна: generations * bitCount бит. Ложноположительный ответ возможен с вероятностью ~fpp,
+// пока в период добавлено не больше expectedInsertions ключей; ложноотрицательный - только на гонке с ротацией
+public class RotatingBloomFilter {
+
+    private final long bitCount;
+    private final int hashCount;
+    private final long periodMillis;
+    private final AtomicLongArray[] generations;
+    // Номер текущего периода; меняется под блокировкой вместе с очисткой массивов
+    private volatile long currentPeriod = Long.MIN_VALUE;
+
+    public RotatingBloomFilter(long expectedInsertions, double fpp, long periodMillis, int generations) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1 || periodMillis <= 0 || generations < 2) {
+            throw new IllegalArgumentException("Invalid Bloom filter parameters: expectedInsertions="
+                    + expectedInsertions + ", fpp=" + fpp + ", periodMillis=" + periodMillis
+                    + ", generations=" + generations);
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min((bits + Long.SIZE - 1) / Long.SIZE, Integer.MAX_VALUE);
+        this.bitCount = (long) words * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.periodMillis = periodMillis;
+        this.generations = new AtomicLongArray[generations];
+        for (int i = 0; i < generations; i++) {
+            this.generations[i] = new AtomicLongArray(words);
+        }
+    }
+
+    public static long hash(byte[] value) {
+        return HyperLogLog.hash64(value);
+    }
+
+    public long sizeInBytes() {
+        return bitCount / Byte.SIZE * generations.length;
+    }
+
+    public boolean mightContain(long hash, long nowMillis) {
+        advance(nowMillis);
+        for (AtomicLongArray bits : generations) {
+            if (contains(bits, hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void put(long hash, long nowMillis) {
+        long period = advance(nowMillis);
+        AtomicLongArray bits = generations[(int) Math.floorMod(period, (long) generations.length)];
+        // Двойное хеширование Кирша-Митценмахера: k индексов из двух половин одного 64-битного хеша
+        long h1 = hash;
+        long h2 = mix(hash);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long value = bits.get(word);
+            while ((value & mask) == 0 && !bits.compareAndSet(word, value, value | mask)) {
+                value = bits.get(word);
+            }
+        }
+    }
+
+    private boolean contains(AtomicLongArray bits, long hash) {
+        long h1 = hash;
+        long h2 = mix(hash);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long advance(long nowMillis) {
+        long period = Math.floorDiv(nowMillis, periodMillis);
+        if (period > currentPeriod) {
+            rotate(period);
+        }
+        return currentPeriod;
+    }
+
+    private synchronized void rotate(long period) {
+        long current = currentPeriod;
+        if (period <= current) {
+            return;
+        }
+        // Массивы пропущенных периодов тоже очищаются: после простоя в них остались бы старые ключи
+        long from = current == Long.MIN_VALUE ? period : Math.max(current + 1, period - generations.length + 1);
+        for (long p = from; p <= period; p++) {
+            AtomicLongArray bits = generations[(int) Math.floorMod(p, (long) generations.length)];
+            for (int i = 0; i < bits.length(); i++) {
+                bits.set(i, 0);
+            }
+        }
+        currentPeriod = period;
+    }
+
+    // Второй хеш - перемешанный первый; нечётный, чтобы шаг h1 + i * h2 обходил разные биты
+    private static long mix(long hash) {
+        long h = hash ^ 0x9e3779b97f4a7c15L;
+        h ^= h >>> 31;
+        h *= 0xbf58476d1ce4e5b9L;
+        h ^= h >>> 29;
+        return h | 1;
+    }
+}
@@ -0,0 +1,66 @@
+package ru.practicum.sketch;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Кольцо счётчиков по временным слотам. Номер слота и счётчик упакованы в один long,
+// поэтому сброс устаревшего слота и инкремент выполняются одним CAS без блокировок
+public class SlotRing {
+
+    private static final long COUNT_MASK = 0xFFFF_FFFFL;
+
+    private final long slotMillis;
+    private final AtomicLongArray slots;
+
+    public SlotRing(long slotMillis, int slotCount) {
+        this.slotMillis = slotMillis;
+        this.slots = new AtomicLongArray(slotCount);
+    }
+
+    public void increment(long epochMillis, long nowMillis) {
+        long slot = epochMillis / slotMillis;
+        long currentSlot = nowMillis / slotMillis;
+        if (slot > currentSlot || slot <= currentSlot - slots.length()) {
+            return;
+        }
+
+        int index = (int) (slot % slots.length());
+        while (true) {
+            long packed = slots.get(index);
+            long packedSlot = packed >>> Integer.SIZE;
+            long next;
+            if (packedSlot == slot) {
+                next = packed + 1;
+            } else if (packedSlot < slot) {
+                next = (slot << Integer.SIZE) | 1;
+            } else {
+                // В ячейке уже более свежий слот: хит слишком старый для этого окна
+                return;
+            }
+            if (slots.compareAndSet(index, packed, next)) {
+                return;
+            }
+        }
+    }
+
+    public long sum(long nowMillis) {
+        long currentSlot = nowMillis / slotMillis;
+        long oldestSlot = currentSlot - slots.length() + 1;
+        long sum = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            long packed = slots.get(i);
+            long packedSlot = packed >>> Integer.SIZE;
+            if (packedSlot >= oldestSlot && packedSlot <= currentSlot) {
+                sum += packed & COUNT_MASK;
+            }
+        }
+        return sum;
+    }
+
+    public long window() {
+        return slotMillis * slots.length();
+    }
+
+    public long sizeInBytes() {
+        return 56L + 8L * slots.length();
+    }
+}
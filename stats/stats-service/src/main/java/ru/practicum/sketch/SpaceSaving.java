@@ -0,0 +1,177 @@
+package ru.practicum.sketch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Самые частые ключи потока (алгоритм Space-Saving) в памяти на capacity счётчиков.
+// Отслеживаемый ключ заменяет минимальный счётчик и наследует его значение как ошибку, поэтому для
+// каждого ключа count - error <= истинное число <= count, а любой неотслеживаемый ключ встречался не чаще floor().
+// Ключ с истинным числом больше total / capacity гарантированно отслеживается.
+// Счётчики лежат в min-куче по count: и инкремент, и вытеснение стоят O(log capacity)
+public class SpaceSaving {
+
+    private final int capacity;
+    private final long[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<Long, Integer> positions;
+    private int size;
+    private long total;
+    // Оценка сверху для ключей, выпавших при слиянии; у отдельного скетча всегда 0
+    private long droppedFloor;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Space-Saving capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    public synchronized void offer(long key, long count) {
+        total += count;
+        Integer position = positions.get(key);
+        if (position != null) {
+            counts[position] += count;
+            siftDown(position);
+        } else if (size < capacity) {
+            set(size, key, count, 0);
+            size++;
+            siftUp(size - 1);
+        } else {
+            // Вытесняется минимальный счётчик: новый ключ мог встречаться до этого не чаще его значения
+            long floor = counts[0];
+            positions.remove(keys[0]);
+            set(0, key, floor + count, floor);
+            siftDown(0);
+        }
+    }
+
+    // Неотслеживаемый ключ встречался не больше floor() раз
+    public synchronized long floor() {
+        return Math.max(droppedFloor, size == capacity ? counts[0] : 0);
+    }
+
+    // Объединённый скетч той же ёмкости: счётчики складываются, отсутствующий в одном из скетчей ключ
+    // получает floor() этого скетча и в count, и в error. Из объединения остаются capacity наибольших
+    public static SpaceSaving merge(SpaceSaving first, SpaceSaving second) {
+        if (first.capacity != second.capacity) {
+            throw new IllegalArgumentException("Cannot merge Space-Saving sketches with different capacity: "
+                    + first.capacity + " and " + second.capacity);
+        }
+        List<Item> firstItems = first.items();
+        List<Item> secondItems = second.items();
+        long firstFloor = first.floor();
+        long secondFloor = second.floor();
+
+        Map<Long, long[]> merged = new HashMap<>();
+        for (Item item : firstItems) {
+            merged.put(item.key(), new long[]{item.count() + secondFloor, item.error() + secondFloor});
+        }
+        for (Item item : secondItems) {
+            long[] counter = merged.get(item.key());
+            if (counter == null) {
+                merged.put(item.key(), new long[]{item.count() + firstFloor, item.error() + firstFloor});
+            } else {
+                // floor второго скетча был добавлен заранее, а ключ в нём отслеживается
+                counter[0] += item.count() - secondFloor;
+                counter[1] += item.error() - secondFloor;
+            }
+        }
+
+        List<Map.Entry<Long, long[]>> ranked = new ArrayList<>(merged.entrySet());
+        ranked.sort(Comparator.comparingLong((Map.Entry<Long, long[]> entry) -> entry.getValue()[0]).reversed());
+
+        SpaceSaving result = new SpaceSaving(first.capacity);
+        result.total = first.getTotal() + second.getTotal();
+        result.droppedFloor = firstFloor + secondFloor;
+        for (int i = 0; i < ranked.size(); i++) {
+            long[] counter = ranked.get(i).getValue();
+            if (i < result.capacity) {
+                result.set(result.size, ranked.get(i).getKey(), counter[0], counter[1]);
+                result.size++;
+                result.siftUp(result.size - 1);
+            } else {
+                result.droppedFloor = Math.max(result.droppedFloor, counter[0]);
+            }
+        }
+        return result;
+    }
+
+    // По убыванию count
+    public synchronized List<Item> items() {
+        List<Item> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new Item(keys[i], counts[i], errors[i]));
+        }
+        items.sort(Comparator.comparingLong(Item::count).reversed());
+        return items;
+    }
+
+    public long sizeInBytes() {
+        // Три массива и узлы HashMap с упакованными Long и Integer
+        return 64L + 3 * (16L + 8L * capacity) + 16L + 4L * capacity + (long) capacity * (32 + 24 + 16);
+    }
+
+    private void set(int position, long key, long count, long error) {
+        keys[position] = key;
+        counts[position] = count;
+        errors[position] = error;
+        positions.put(key, position);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long key = keys[a];
+        long count = counts[a];
+        long error = errors[a];
+        set(a, keys[b], counts[b], errors[b]);
+        set(b, key, count, error);
+    }
+
+    public record Item(long key, long count, long error) {
+    }
+}
@@ -0,0 +1,13 @@
+CREATE TABLE IF NOT EXISTS stat
+(
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    app_id     INT         NOT NULL,
+    uri_id     INT         NOT NULL,
+    ip         BYTEA       NOT NULL,
+    time_stamp TIMESTAMP   NOT NULL,
+    CONSTRAINT pk_stat PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_stat_uri_time_stamp ON stat (uri_id, time_stamp);
+
+CREATE INDEX IF NOT EXISTS idx_stat_time_stamp ON stat (time_stamp);
@@ -0,0 +1,22 @@
+-- Секции по времени создаёт и удаляет StatPartitionService; в stat_default попадают хиты вне созданных секций
+CREATE TABLE IF NOT EXISTS stat
+(
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    app_id     INT         NOT NULL,
+    uri_id     INT         NOT NULL,
+    ip         BYTEA       NOT NULL,
+    time_stamp TIMESTAMP   NOT NULL,
+    CONSTRAINT pk_stat PRIMARY KEY (id, time_stamp)
+) PARTITION BY RANGE (time_stamp);
+
+CREATE TABLE IF NOT EXISTS stat_default PARTITION OF stat DEFAULT;
+
+-- Запросы по заданным URI: поиск по (uri_id, time_stamp) и index-only scan для COUNT(DISTINCT ip)
+CREATE INDEX IF NOT EXISTS idx_stat_uri_time_stamp ON stat (uri_id, time_stamp) INCLUDE (app_id, ip);
+
+-- Запросы по всем URI: хиты пишутся почти в порядке времени, BRIN отсекает блоки вне диапазона
+CREATE INDEX IF NOT EXISTS idx_stat_time_stamp_brin ON stat USING BRIN (time_stamp);
+
+-- Поиск URI по префиксу (uris=/events/*): LIKE 'prefix%' использует индекс только с text_pattern_ops,
+-- если локаль базы не C
+CREATE INDEX IF NOT EXISTS idx_stat_uri_name_pattern ON stat_uri (name text_pattern_ops);
@@ -1,31 +1,117 @@
-CREATE TABLE IF NOT EXISTS stat
+-- Словари сервисов и URI: в stat, stat_rollup и stat_hll хранятся только их id
+CREATE TABLE IF NOT EXISTS stat_app
 (
-    id
-    BIGINT
-    GENERATED
-    BY
-    DEFAULT AS
-    IDENTITY
-    NOT
-    NULL,
-    app
-    VARCHAR
+    id   INT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR(50) NOT NULL,
+    CONSTRAINT pk_stat_app PRIMARY KEY (id),
+    CONSTRAINT uq_stat_app_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS stat_uri
+(
+    id   INT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    name VARCHAR(50) NOT NULL,
+    CONSTRAINT pk_stat_uri PRIMARY KEY (id),
+    CONSTRAINT uq_stat_uri_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS stat_rollup
+(
+    bucket_unit  VARCHAR(6)  NOT NULL,
+    bucket_start TIMESTAMP   NOT NULL,
+    app_id       INT         NOT NULL,
+    uri_id       INT         NOT NULL,
+    hits         BIGINT      NOT NULL,
+    CONSTRAINT pk_stat_rollup PRIMARY KEY (bucket_unit, bucket_start, app_id, uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS stat_rollup_watermark
+(
+    id               INT    NOT NULL,
+    last_stat_id     BIGINT NOT NULL,
+    horizon_stat_id  BIGINT NOT NULL,
+    horizon_marker   BIGINT NOT NULL DEFAULT 0,
+    CONSTRAINT pk_stat_rollup_watermark PRIMARY KEY (id)
+);
+
+ALTER TABLE stat_rollup_watermark ADD COLUMN IF NOT EXISTS horizon_marker BIGINT NOT NULL DEFAULT 0;
+
+INSERT INTO stat_rollup_watermark (id, last_stat_id, horizon_stat_id)
+SELECT 1, 0, 0
+WHERE NOT EXISTS (SELECT 1 FROM stat_rollup_watermark);
+
+CREATE TABLE IF NOT EXISTS stat_hll
+(
+    bucket_start TIMESTAMP   NOT NULL,
+    app_id       INT         NOT NULL,
+    uri_id       INT         NOT NULL,
+    sketch       BYTEA       NOT NULL,
+    CONSTRAINT pk_stat_hll PRIMARY KEY (bucket_start, app_id, uri_id)
+);
+
+CREATE TABLE IF NOT EXISTS stat_hll_watermark
 (
-    50
-) NOT NULL,
-    uri VARCHAR
+    id               INT    NOT NULL,
+    last_stat_id     BIGINT NOT NULL,
+    horizon_stat_id  BIGINT NOT NULL,
+    horizon_marker   BIGINT NOT NULL DEFAULT 0,
+    CONSTRAINT pk_stat_hll_watermark PRIMARY KEY (id)
+);
+
+INSERT INTO stat_hll_watermark (id, last_stat_id, horizon_stat_id)
+SELECT 1, 0, 0
+WHERE NOT EXISTS (SELECT 1 FROM stat_hll_watermark);
+
+-- Плотные id IP для битмапов stat_bitmap: назначаются проходом индексации в порядке первого появления
+CREATE TABLE IF NOT EXISTS stat_ip
+(
+    id INT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    ip BYTEA NOT NULL,
+    CONSTRAINT pk_stat_ip PRIMARY KEY (id),
+    CONSTRAINT uq_stat_ip_ip UNIQUE (ip)
+);
+
+-- Множество id IP, обращавшихся к URI за сутки, в сериализованном виде Roaring bitmap
+CREATE TABLE IF NOT EXISTS stat_bitmap
 (
-    50
-) NOT NULL,
-    ip VARCHAR
+    uri_id    INT   NOT NULL,
+    visit_day DATE  NOT NULL,
+    bitmap    BYTEA NOT NULL,
+    CONSTRAINT pk_stat_bitmap PRIMARY KEY (uri_id, visit_day)
+);
+
+CREATE TABLE IF NOT EXISTS stat_bitmap_watermark
 (
-    15
-) NOT NULL,
-    time_stamp TIMESTAMP NOT NULL,
-    CONSTRAINT pk_stat PRIMARY KEY
+    id               INT    NOT NULL,
+    last_stat_id     BIGINT NOT NULL,
+    horizon_stat_id  BIGINT NOT NULL,
+    horizon_marker   BIGINT NOT NULL DEFAULT 0,
+    CONSTRAINT pk_stat_bitmap_watermark PRIMARY KEY (id)
+);
+
+ALTER TABLE stat_bitmap_watermark ADD COLUMN IF NOT EXISTS horizon_marker BIGINT NOT NULL DEFAULT 0;
+
+INSERT INTO stat_bitmap_watermark (id, last_stat_id, horizon_stat_id)
+SELECT 1, 0, 0
+WHERE NOT EXISTS (SELECT 1 FROM stat_bitmap_watermark);
+
+-- Пульс для измерения отставания реплики: сервис пишет сюда время в основной базе и читает его из реплики
+CREATE TABLE IF NOT EXISTS stat_replica_heartbeat
 (
-    id
-)
-    );
+    id          INT    NOT NULL,
+    beat_millis BIGINT NOT NULL,
+    CONSTRAINT pk_stat_replica_heartbeat PRIMARY KEY (id)
+);
 
+INSERT INTO stat_replica_heartbeat (id, beat_millis)
+SELECT 1, 0
+WHERE NOT EXISTS (SELECT 1 FROM stat_replica_heartbeat);
 
+-- Номер первой записи журнала хитов, ещё не перенесённой в stat, по каждому журналу (stats.ingest.log.id);
+-- обновляется в транзакции вставки
+CREATE TABLE IF NOT EXISTS stat_log_checkpoint
+(
+    log_id        VARCHAR(64) NOT NULL,
+    next_sequence BIGINT      NOT NULL,
+    CONSTRAINT pk_stat_log_checkpoint PRIMARY KEY (log_id)
+);
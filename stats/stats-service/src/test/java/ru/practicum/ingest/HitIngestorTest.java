@@ -0,0 +1,148 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.practicum.StatDto;
+import ru.practicum.StatResponseDto;
+import ru.practicum.StatsRequestDto;
+import ru.practicum.mapper.IpAddressCodec;
+import ru.practicum.mapper.IpStorageMode;
+import ru.practicum.model.Stat;
+import ru.practicum.service.StatService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// Один некорректный хит среди одновременных не должен отменять запись остальных хитов пакета
+class HitIngestorTest {
+
+    private static final int VALID_HITS = 40;
+
+    private final IpAddressCodec ipAddressCodec = new IpAddressCodec(IpStorageMode.BINARY, "");
+    private final RecordingStatService statService = new RecordingStatService();
+    private final ExecutorService executor = Executors.newFixedThreadPool(VALID_HITS + 1);
+    private HitIngestor ingestor;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        if (ingestor != null) {
+            ingestor.shutdown();
+        }
+    }
+
+    @Test
+    void invalidIpIsRejectedAloneAndValidHitsOfTheBatchAreSaved() throws Exception {
+        ingestor = newIngestor();
+
+        List<Throwable> results = ingestConcurrently(hit("ewm", "bad-ip-value"));
+
+        assertInstanceOf(IllegalArgumentException.class, results.get(VALID_HITS));
+        results.subList(0, VALID_HITS).forEach(result -> assertNull(result));
+        assertEquals(VALID_HITS, statService.saved.size());
+    }
+
+    @Test
+    void rejectedBatchIsRetriedHitByHit() throws Exception {
+        ingestor = newIngestor();
+
+        List<Throwable> results = ingestConcurrently(hit(RecordingStatService.BROKEN_APP, "10.0.0.1"));
+
+        assertInstanceOf(DataIntegrityViolationException.class, results.get(VALID_HITS));
+        results.subList(0, VALID_HITS).forEach(result -> assertNull(result));
+        assertEquals(VALID_HITS, statService.saved.size());
+    }
+
+    private HitIngestor newIngestor() {
+        // Задержка пакета больше времени старта потоков: все хиты теста попадают в один пакет
+        return new HitIngestor(statService, ipAddressCodec, true, IngestDurability.COMMIT, 1024, 1000,
+                Duration.ofMillis(200), Duration.ofMillis(100), Duration.ofSeconds(5), new SimpleMeterRegistry());
+    }
+
+    // Последний элемент - результат invalid; null - хит принят
+    private List<Throwable> ingestConcurrently(StatDto invalid) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Throwable>> futures = new ArrayList<>();
+        for (int i = 0; i <= VALID_HITS; i++) {
+            StatDto hit = i < VALID_HITS ? hit("ewm", "10.0.0." + (i + 1)) : invalid;
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    ingestor.ingest(hit);
+                    return null;
+                } catch (RuntimeException exception) {
+                    return exception;
+                }
+            }));
+        }
+        start.countDown();
+        List<Throwable> results = new ArrayList<>();
+        for (Future<Throwable> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+
+    private static StatDto hit(String app, String ip) {
+        return new StatDto(app, "/events/1", ip, LocalDateTime.of(2024, 1, 1, 0, 0));
+    }
+
+    // Как StatServiceImpl, кодирует IP при записи; пакет с хитом BROKEN_APP отклоняется целиком
+    private class RecordingStatService implements StatService {
+
+        static final String BROKEN_APP = "broken";
+
+        private final Queue<StatDto> saved = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public StatDto createStat(StatDto statDto) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long createStats(Iterator<StatDto> stats) {
+            List<StatDto> batch = new ArrayList<>();
+            stats.forEachRemaining(batch::add);
+            for (StatDto hit : batch) {
+                ipAddressCodec.encode(hit.getIp());
+                if (BROKEN_APP.equals(hit.getApp())) {
+                    throw new DataIntegrityViolationException("app rejected: " + hit.getApp());
+                }
+            }
+            saved.addAll(batch);
+            return batch.size();
+        }
+
+        @Override
+        public boolean createLoggedStats(String logId, List<Stat> stats, long from, long to) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<StatResponseDto> readStat(StatsRequestDto request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void streamStat(StatsRequestDto request, Consumer<StatResponseDto> consumer) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.practicum.repository;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Планы запросов "все URI" и "заданные URI" на PostgreSQL с данными: по заданным URI - index-only scan
+// по (uri_id, time_stamp), по всем URI за узкий интервал - BRIN по time_stamp, без условия на uri_id
+@Testcontainers(disabledWithoutDocker = true)
+class StatQueryPlanTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final int DAYS = 30;
+    private static final int HITS = 300_000;
+    private static final int URIS = 1_000;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @BeforeAll
+    static void seed() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(),
+                POSTGRES.getUsername(), POSTGRES.getPassword());
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"),
+                new ClassPathResource("schema-postgresql.sql")).execute(dataSource);
+
+        // Хиты идут в порядке времени, как их пишет сервис; IP повторяются, чтобы COUNT(DISTINCT ip) был осмысленным
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("""
+                INSERT INTO stat (app_id, uri_id, ip, time_stamp)
+                SELECT 1, i % ? + 1, int4send(i % 5000), ?::timestamp + i * (? * INTERVAL '1 day' / ?)
+                FROM generate_series(0, ? - 1) AS i
+                """, URIS, FROM, DAYS, HITS, HITS);
+        jdbcTemplate.execute("VACUUM ANALYZE stat");
+        namedJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    @Test
+    void givenUrisUseIndexOnlyScanOnUriAndTime() {
+        for (boolean unique : new boolean[]{false, true}) {
+            String plan = explain(FROM, FROM.plusDays(DAYS), List.of(1, 2), unique);
+
+            assertTrue(plan.contains("Index Only Scan"), plan);
+            assertTrue(plan.contains("Index Cond: ((uri_id = ANY"), plan);
+            assertFalse(plan.contains("Seq Scan"), plan);
+        }
+    }
+
+    @Test
+    void allUrisUseBrinOnTimeWithoutUriFilter() {
+        for (boolean unique : new boolean[]{false, true}) {
+            String plan = explain(FROM.plusDays(10), FROM.plusDays(11), null, unique);
+
+            assertTrue(plan.contains("Bitmap Index Scan"), plan);
+            assertTrue(plan.contains("time_stamp_idx"), plan);
+            assertFalse(plan.contains("uri_id ="), plan);
+            assertFalse(plan.contains("Seq Scan"), plan);
+        }
+    }
+
+    private static String explain(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean unique) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = StatStreamRepository.hitsSql(start, end, uriIds, unique, params);
+        return String.join("\n", namedJdbcTemplate.queryForList("EXPLAIN " + sql, params, String.class));
+    }
+}
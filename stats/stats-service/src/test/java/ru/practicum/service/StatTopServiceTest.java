@@ -0,0 +1,44 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.StatTopDto;
+import ru.practicum.exception.FeatureDisabledException;
+import ru.practicum.model.BucketUnit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatTopServiceTest {
+
+    // Окно старше retention не пересекается с хранимыми бакетами: пустой ответ вместо ошибки диапазона
+    @Test
+    void fullyExpiredRangeReturnsEmptyTop() {
+        StatTopService service = new StatTopService(null, null, true, true, 100, BucketUnit.HOUR,
+                Duration.ofDays(2), new SimpleMeterRegistry());
+        LocalDateTime end = LocalDateTime.now().minusDays(10);
+
+        StatTopDto top = service.getTop(end.minusDays(1), end, 10, null);
+
+        assertEquals(0, top.getTotalHits());
+        assertTrue(top.getItems().isEmpty());
+        assertEquals(top.getStart(), top.getEnd());
+    }
+
+    // Выключенный топ отвечает 404 с именем свойства, а не 500
+    @Test
+    void disabledTopThrowsFeatureDisabled() {
+        StatTopService service = new StatTopService(null, null, false, true, 100, BucketUnit.HOUR,
+                Duration.ofDays(2), new SimpleMeterRegistry());
+        LocalDateTime end = LocalDateTime.now();
+
+        FeatureDisabledException exception = assertThrows(FeatureDisabledException.class,
+                () -> service.getTop(end.minusHours(1), end, 10, null));
+
+        assertTrue(exception.getMessage().contains("stats.top.enabled"));
+    }
+}
@@ -0,0 +1,37 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    private static final int PRECISION = 10;
+
+    // Ошибка оценки в пределах нескольких стандартных ошибок по обе стороны порога 2.5m, где линейный
+    // подсчёт сменяется сырой оценкой
+    @Test
+    void estimateStaysWithinErrorAroundSmallRangeThreshold() {
+        int m = 1 << PRECISION;
+        double bound = 4 * HyperLogLog.standardError(PRECISION);
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        int added = 0;
+        for (int cardinality : new int[]{m / 2, 2 * m, (int) (2.5 * m), 3 * m, 5 * m, 10 * m}) {
+            for (; added < cardinality; added++) {
+                sketch.add(ByteBuffer.allocate(Integer.BYTES).putInt(added).array());
+            }
+
+            double error = Math.abs(sketch.estimate() - cardinality) / (double) cardinality;
+
+            assertTrue(error < bound, "cardinality " + cardinality + ", estimate " + sketch.estimate());
+        }
+    }
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertEquals(0, new HyperLogLog(PRECISION).estimate());
+    }
+}